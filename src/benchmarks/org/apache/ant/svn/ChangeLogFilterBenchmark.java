@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Selective filters applied while parsing a log of a million
+ * revisions compared to filtering the entries after they have been
+ * created.
+ *
+ * <p>The log is a block of 10,000 revisions written over and over
+ * again.  The auxiliary counters <code>revisions</code> and
+ * <code>accepted</code> report parsed and accepted revisions per
+ * second.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ChangeLogFilterBenchmark {
+
+    private static final int BLOCK = 10000;
+
+    @Param({"1000000"})
+    public int revisions;
+
+    /**
+     * none, author (one of five authors), path (one of 13 modules),
+     * message (one in ten revisions) or combined (author and path).
+     */
+    @Param({"none", "author", "path", "message", "combined"})
+    public String filter;
+
+    private byte[] block;
+    private ChangeLogFilter changeLogFilter;
+
+    @Setup
+    public void generate() {
+        block = SvnOutputGenerator.log(BLOCK, 5, 200);
+        if ("none".equals(filter)) {
+            changeLogFilter = null;
+            return;
+        }
+        changeLogFilter = new ChangeLogFilter();
+        if ("author".equals(filter) || "combined".equals(filter)) {
+            changeLogFilter.setAuthors("bodewig");
+        }
+        if ("path".equals(filter) || "combined".equals(filter)) {
+            changeLogFilter.setIncludes("/trunk/**/module7/**");
+        }
+        if ("message".equals(filter)) {
+            changeLogFilter.setMessage("^r\\d*3:");
+        }
+    }
+
+    @Benchmark
+    public long inParser(Counters counters) throws IOException {
+        EntryCounter entries = new EntryCounter(null);
+        SvnOutputGenerator.pump(block, revisions / BLOCK,
+                                new SvnChangeLogParser(entries,
+                                                       changeLogFilter));
+        counters.add(revisions, entries.count);
+        return entries.count;
+    }
+
+    @Benchmark
+    public long afterParsing(Counters counters) throws IOException {
+        EntryCounter entries = new EntryCounter(changeLogFilter);
+        SvnOutputGenerator.pump(block, revisions / BLOCK,
+                                new SvnChangeLogParser(entries));
+        counters.add(revisions, entries.count);
+        return entries.count;
+    }
+
+    /**
+     * Counts the accepted entries without keeping them.
+     */
+    private static class EntryCounter implements SvnEntryListener {
+        private final SvnEntryFilter filter;
+        private long count;
+
+        EntryCounter(SvnEntryFilter filter) {
+            this.filter = filter;
+        }
+
+        public void entryParsed(SvnEntry entry) {
+            if (filter == null
+                || filter.accepts(entry.getAuthor(), entry.getMessage(),
+                                  Arrays.asList(entry.getPaths()))) {
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Revisions parsed and accepted.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long revisions;
+        public long accepted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            revisions = 0;
+            accepted = 0;
+        }
+
+        void add(long parsed, long entries) {
+            revisions += parsed;
+            accepted += entries;
+        }
+    }
+}
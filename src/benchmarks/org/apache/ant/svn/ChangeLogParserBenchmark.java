@@ -0,0 +1,118 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the parsers for svn log's text and XML output.
+ *
+ * <p>The auxiliary counters <code>megabytes</code> and
+ * <code>revisions</code> report MB/s and revisions/s.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeLogParserBenchmark {
+
+    @Param({"10000"})
+    public int revisions;
+
+    @Param({"1", "20"})
+    public int pathsPerRevision;
+
+    @Param({"80", "2000"})
+    public int messageSize;
+
+    private byte[] text;
+    private byte[] xml;
+
+    @Setup
+    public void generate() {
+        text = SvnOutputGenerator.log(revisions, pathsPerRevision,
+                                      messageSize);
+        xml = SvnOutputGenerator.xmlLog(revisions, pathsPerRevision,
+                                        messageSize);
+    }
+
+    @Benchmark
+    public long textParser(Counters counters) throws IOException {
+        EntryCounter entries = new EntryCounter();
+        SvnOutputGenerator.pump(text, new SvnChangeLogParser(entries));
+        counters.add(text.length, entries.count);
+        return entries.count;
+    }
+
+    @Benchmark
+    public long xmlParser(Counters counters) throws IOException {
+        EntryCounter entries = new EntryCounter();
+        SvnOutputGenerator.pump(xml, new SvnChangeLogXmlParser(entries));
+        counters.add(xml.length, entries.count);
+        return entries.count;
+    }
+
+    /**
+     * Counts the parsed entries without keeping them.
+     */
+    private static class EntryCounter implements SvnEntryListener {
+        private long count;
+
+        public void entryParsed(SvnEntry entry) {
+            count++;
+        }
+    }
+
+    /**
+     * Data and revisions parsed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        public long revisions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            revisions = 0;
+        }
+
+        void add(int bytes, long entries) {
+            megabytes += bytes / 1e6;
+            revisions += entries;
+        }
+    }
+}
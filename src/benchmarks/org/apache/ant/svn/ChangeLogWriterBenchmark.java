@@ -0,0 +1,126 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of SvnChangeLogWriter for entries parsed from generated
+ * svn log output.
+ *
+ * <p>The auxiliary counters <code>megabytes</code> and
+ * <code>revisions</code> report MB/s (of characters written) and
+ * revisions/s.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeLogWriterBenchmark {
+
+    @Param({"10000"})
+    public int revisions;
+
+    @Param({"1", "20"})
+    public int pathsPerRevision;
+
+    @Param({"80", "2000"})
+    public int messageSize;
+
+    private SvnEntry[] entries;
+
+    @Setup
+    public void parse() throws IOException {
+        SvnChangeLogParser parser = new SvnChangeLogParser();
+        SvnOutputGenerator.pump(SvnOutputGenerator.log(revisions,
+                                                       pathsPerRevision,
+                                                       messageSize),
+                                parser);
+        entries = parser.getEntrySetAsArray();
+    }
+
+    @Benchmark
+    public long printChangeLog(Counters counters) throws IOException {
+        CharCounter out = new CharCounter();
+        new SvnChangeLogWriter().printChangeLog(new PrintWriter(out),
+                                                entries);
+        counters.megabytes += out.count / 1e6;
+        counters.revisions += entries.length;
+        return out.count;
+    }
+
+    /**
+     * Discards everything but counts the characters.
+     */
+    private static class CharCounter extends Writer {
+        private long count;
+
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        public void write(int c) {
+            count++;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+
+    /**
+     * Data and revisions written.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        public long revisions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            revisions = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the parsers for the different outputs of svn diff.
+ *
+ * <p>The auxiliary counters <code>megabytes</code> and
+ * <code>paths</code> report MB/s and changed paths/s.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffParserBenchmark {
+
+    @Param({"10000"})
+    public int files;
+
+    @Param({"10", "200"})
+    public int linesPerFile;
+
+    private byte[] diff;
+    private byte[] summary;
+    private byte[] xmlSummary;
+
+    @Setup
+    public void generate() {
+        diff = SvnOutputGenerator.diff(files, linesPerFile);
+        summary = SvnOutputGenerator.diffSummary(files);
+        xmlSummary = SvnOutputGenerator.xmlDiffSummary(files);
+    }
+
+    @Benchmark
+    public int fullDiff(Counters counters) throws IOException {
+        return parse(diff, new SvnDiffParser(), counters);
+    }
+
+    @Benchmark
+    public int summarizeText(Counters counters) throws IOException {
+        return parse(summary,
+                     new SvnDiffSummaryParser(SvnOutputGenerator.BASE_URL),
+                     counters);
+    }
+
+    @Benchmark
+    public int summarizeXml(Counters counters) throws IOException {
+        return parse(xmlSummary,
+                     new SvnDiffSummaryXmlParser(SvnOutputGenerator.BASE_URL),
+                     counters);
+    }
+
+    private static int parse(byte[] data, OutputStream parser,
+                             Counters counters) throws IOException {
+        SvnOutputGenerator.pump(data, parser);
+        int count = ((DiffParser) parser).getEntrySetAsArray().length;
+        counters.megabytes += data.length / 1e6;
+        counters.paths += count;
+        return count;
+    }
+
+    /**
+     * Data and paths parsed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        public long paths;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            paths = 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of splitting svn's output into lines.
+ *
+ * <p>The auxiliary counters <code>megabytes</code> and
+ * <code>lines</code> report MB/s and lines/s.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineOrientedOutputStreamBenchmark {
+
+    @Param({"10000"})
+    public int revisions;
+
+    @Param({"80", "2000"})
+    public int messageSize;
+
+    private byte[] data;
+
+    @Setup
+    public void generate() {
+        data = SvnOutputGenerator.log(revisions, 5, messageSize);
+    }
+
+    @Benchmark
+    public long write(Counters counters) throws IOException {
+        LineCounter lines = new LineCounter();
+        SvnOutputGenerator.pump(data, lines);
+        counters.megabytes += data.length / 1e6;
+        counters.lines += lines.count;
+        return lines.count;
+    }
+
+    /**
+     * Does nothing but count the lines.
+     */
+    private static class LineCounter extends LineOrientedOutputStream {
+        private long count;
+
+        protected void processLine(String line) {
+            count++;
+        }
+    }
+
+    /**
+     * Data and lines processed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            lines = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.Commandline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A loop executing a revisiondiff 10,000 times, either using one
+ * configured task instance or configuring a new one for each
+ * execution.
+ *
+ * <p>svn isn't started, the task only builds the command line and
+ * writes an empty report, so the benchmark measures the task's own
+ * overhead.  The result is the number of arguments of the last
+ * command line, it doesn't grow with the number of executions.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RepeatedExecutionBenchmark {
+
+    @Param({"10000"})
+    public int executions;
+
+    @Param({"true", "false"})
+    public boolean reuse;
+
+    private Project project;
+    private File report;
+
+    @Setup
+    public void setUp() throws IOException {
+        project = new Project();
+        project.init();
+        report = File.createTempFile("rdiff", ".xml");
+    }
+
+    @TearDown
+    public void tearDown() {
+        report.delete();
+    }
+
+    @Benchmark
+    public int loop() {
+        final StubbedRevisionDiff reused = reuse ? configure() : null;
+        int arguments = 0;
+        for (int i = 0; i < executions; i++) {
+            final StubbedRevisionDiff task =
+                reused != null ? reused : configure();
+            task.execute();
+            arguments = task.arguments;
+        }
+        return arguments;
+    }
+
+    private StubbedRevisionDiff configure() {
+        final StubbedRevisionDiff task = new StubbedRevisionDiff();
+        task.setProject(project);
+        task.setSvnURL("https://svn.example.org/repos/project/trunk");
+        task.setStart("1000");
+        task.setEnd("2000");
+        task.setDestFile(report);
+        return task;
+    }
+
+    /**
+     * A revisiondiff that records the size of the command line
+     * instead of running svn.
+     */
+    private static class StubbedRevisionDiff extends SvnRevisionDiff {
+        private int arguments;
+
+        protected void runCommand(final Commandline toExecute) {
+            arguments = toExecute.size();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Creates synthetic output of the svn command line client for the
+ * benchmarks.
+ *
+ * <p>The output is deterministic for a given set of parameters.</p>
+ */
+final class SvnOutputGenerator {
+
+    private static final String SEPARATOR =
+        "------------------------------------------------------------------------";
+    private static final String[] AUTHORS = {
+        "bodewig", "antoine", "peterreilly", "mbenson", "jglick"
+    };
+    private static final char[] ACTIONS = {'M', 'A', 'M', 'D', 'M'};
+    private static final String[] ITEMS = {
+        "modified", "added", "modified", "deleted", "modified"
+    };
+    private static final String WORDS =
+        "the quick brown fox jumps over the lazy dog while svn logs grow ";
+    /** the length of the lines of commit messages */
+    private static final int MESSAGE_LINE_LENGTH = 72;
+    /** base URL used by the summarize outputs */
+    static final String BASE_URL = "http://svn.example.org/repos/project/trunk";
+    /** seconds between two generated revisions */
+    private static final long COMMIT_INTERVAL = 3600 * 1000L;
+    private static final long START = 1000000000000L;
+
+    private SvnOutputGenerator() {
+    }
+
+    /**
+     * Output of svn log -v.
+     *
+     * @param revisions number of revisions
+     * @param pathsPerRevision number of changed paths of each revision
+     * @param messageSize length of each commit message in characters
+     */
+    static byte[] log(final int revisions, final int pathsPerRevision,
+                      final int messageSize) {
+        SimpleDateFormat date =
+            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z (EEE, dd MMM yyyy)",
+                                 Locale.US);
+        date.setTimeZone(TimeZone.getTimeZone("UTC"));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintWriter out = newWriter(bos);
+        out.print(SEPARATOR + "\n");
+        for (int r = revisions; r > 0; r--) {
+            String msg = message(r, messageSize);
+            int lines = count(msg, '\n') + 1;
+            out.print("r" + r + " | " + author(r) + " | "
+                      + date.format(date(r)) + " | " + lines
+                      + (lines == 1 ? " line" : " lines") + "\n");
+            out.print("Changed paths:\n");
+            for (int p = 0; p < pathsPerRevision; p++) {
+                out.print("   " + ACTIONS[(r + p) % ACTIONS.length] + " /"
+                          + path(r, p) + "\n");
+            }
+            out.print("\n" + msg + "\n" + SEPARATOR + "\n");
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Output of svn log -v --xml.
+     *
+     * @param revisions number of revisions
+     * @param pathsPerRevision number of changed paths of each revision
+     * @param messageSize length of each commit message in characters
+     */
+    static byte[] xmlLog(final int revisions, final int pathsPerRevision,
+                         final int messageSize) {
+        SimpleDateFormat date =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000Z'");
+        date.setTimeZone(TimeZone.getTimeZone("UTC"));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintWriter out = newWriter(bos);
+        out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n");
+        for (int r = revisions; r > 0; r--) {
+            out.print("<logentry\n   revision=\"" + r + "\">\n<author>"
+                      + author(r) + "</author>\n<date>"
+                      + date.format(date(r)) + "</date>\n<paths>\n");
+            for (int p = 0; p < pathsPerRevision; p++) {
+                out.print("<path\n   kind=\"file\"\n   action=\""
+                          + ACTIONS[(r + p) % ACTIONS.length] + "\">/"
+                          + path(r, p) + "</path>\n");
+            }
+            out.print("</paths>\n<msg>" + message(r, messageSize)
+                      + "</msg>\n</logentry>\n");
+        }
+        out.print("</log>\n");
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Output of svn diff.
+     *
+     * @param files number of changed files
+     * @param linesPerFile number of changed lines in each file
+     */
+    static byte[] diff(final int files, final int linesPerFile) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintWriter out = newWriter(bos);
+        for (int f = 0; f < files; f++) {
+            String name = path(f, f % 7);
+            char action = ACTIONS[f % ACTIONS.length];
+            if (action == 'D') {
+                out.print("Index: " + name + " (deleted)\n"
+                          + "===================================================================\n");
+                continue;
+            }
+            out.print("Index: " + name + "\n"
+                      + "===================================================================\n"
+                      + "--- " + name + "\t(revision "
+                      + (action == 'A' ? 0 : f) + ")\n"
+                      + "+++ " + name + "\t(revision " + (f + 1) + ")\n"
+                      + "@@ -1," + linesPerFile + " +1," + linesPerFile
+                      + " @@\n");
+            for (int l = 0; l < linesPerFile; l++) {
+                String line = WORDS.substring(l % 20) + l;
+                out.print("-" + line + "\n+" + line + ";\n");
+            }
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Output of svn diff --summarize for {@link #BASE_URL}.
+     *
+     * @param files number of changed files
+     */
+    static byte[] diffSummary(final int files) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintWriter out = newWriter(bos);
+        for (int f = 0; f < files; f++) {
+            out.print(ACTIONS[f % ACTIONS.length] + "       " + BASE_URL
+                      + "/" + path(f, f % 7) + "\n");
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Output of svn diff --summarize --xml for {@link #BASE_URL}.
+     *
+     * @param files number of changed files
+     */
+    static byte[] xmlDiffSummary(final int files) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintWriter out = newWriter(bos);
+        out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<diff>\n"
+                  + "<paths>\n");
+        for (int f = 0; f < files; f++) {
+            out.print("<path\n   props=\"none\"\n   kind=\"file\"\n   item=\""
+                      + ITEMS[f % ITEMS.length] + "\">" + BASE_URL + "/"
+                      + path(f, f % 7) + "</path>\n");
+        }
+        out.print("</paths>\n</diff>\n");
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Writes the data to the stream in chunks the way Ant's
+     * StreamPumper does, flushing after each chunk, and closes the
+     * stream.
+     */
+    static void pump(final byte[] data, final OutputStream out)
+        throws IOException {
+        pump(data, 1, out);
+    }
+
+    /**
+     * Writes the data to the stream the given number of times the
+     * way Ant's StreamPumper does and closes the stream.
+     *
+     * <p>The text output of svn log may be repeated to simulate
+     * histories that wouldn't fit into memory.</p>
+     */
+    static void pump(final byte[] data, final int times,
+                     final OutputStream out) throws IOException {
+        final int chunk = 8192;
+        for (int i = 0; i < times; i++) {
+            for (int off = 0; off < data.length; off += chunk) {
+                out.write(data, off, Math.min(chunk, data.length - off));
+                out.flush();
+            }
+        }
+        out.close();
+    }
+
+    private static String author(final int r) {
+        return AUTHORS[r % AUTHORS.length];
+    }
+
+    private static Date date(final int r) {
+        return new Date(START + r * COMMIT_INTERVAL);
+    }
+
+    private static String path(final int r, final int p) {
+        return "trunk/src/main/org/apache/ant/module" + (r % 13)
+            + "/package" + p + "/Class" + r + "_" + p + ".java";
+    }
+
+    /**
+     * A message of the given size broken into lines.
+     */
+    private static String message(final int r, final int size) {
+        StringBuffer sb = new StringBuffer(size);
+        sb.append("r").append(r).append(": ");
+        int lineStart = 0;
+        while (sb.length() < size) {
+            if (sb.length() - lineStart >= MESSAGE_LINE_LENGTH) {
+                sb.append('\n');
+                lineStart = sb.length();
+            } else {
+                sb.append(WORDS.charAt(sb.length() % WORDS.length()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int count(final String s, final char c) {
+        int n = 0;
+        for (int i = s.indexOf(c); i >= 0; i = s.indexOf(c, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static PrintWriter newWriter(final OutputStream out) {
+        try {
+            return new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+}
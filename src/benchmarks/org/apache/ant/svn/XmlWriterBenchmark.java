@@ -0,0 +1,196 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.util.DOMElementWriter;
+import org.apache.tools.ant.util.DOMUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Compares writing the changelog and diff reports through a DOM tree
+ * per entry - the way SvnChangeLogWriter and SvnDiffHandler used to
+ * do it - with {@link StreamingXmlWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlWriterBenchmark {
+
+    @Param({"1000"})
+    public int revisions;
+
+    @Param({"1", "50"})
+    public int pathsPerRevision;
+
+    private SvnEntry[] entries;
+    private SvnEntry.Path[] paths;
+
+    @Setup
+    public void createEntries() {
+        entries = new SvnEntry[revisions];
+        List<SvnEntry.Path> allPaths = new ArrayList<SvnEntry.Path>();
+        for (int r = 0; r < revisions; r++) {
+            List<SvnEntry.Path> p = new ArrayList<SvnEntry.Path>();
+            for (int i = 0; i < pathsPerRevision; i++) {
+                p.add(new SvnEntry.Path("/trunk/src/main/org/example/dir" + i
+                                        + "/File" + r + ".java",
+                                        i % 3));
+            }
+            allPaths.addAll(p);
+            entries[r] = new SvnEntry(new Date(1000L * r), String.valueOf(r),
+                                      "author" + (r % 7),
+                                      "Fixed <bug> #" + r
+                                      + " & tidied up the code", p);
+        }
+        paths = allPaths.toArray(new SvnEntry.Path[allPaths.size()]);
+    }
+
+    @Benchmark
+    public long changeLogDom() throws IOException {
+        CountingWriter w = new CountingWriter();
+        DomChangeLogWriter.printChangeLog(new PrintWriter(w), entries);
+        return w.count;
+    }
+
+    @Benchmark
+    public long changeLogStreaming() throws IOException {
+        CountingWriter w = new CountingWriter();
+        new SvnChangeLogWriter().printChangeLog(new PrintWriter(w), entries);
+        return w.count;
+    }
+
+    @Benchmark
+    public long diffDom() throws IOException {
+        CountingWriter w = new CountingWriter();
+        DOMElementWriter domWriter = new DOMElementWriter();
+        Document doc = DOMUtils.newDocument();
+        for (int i = 0; i < paths.length; i++) {
+            Element e = doc.createElement("path");
+            DOMUtils.appendCDATAElement(e, "name", paths[i].getName());
+            DOMUtils.appendTextElement(e, "action",
+                                       paths[i].getActionDescription());
+            domWriter.write(e, w, 1, "\t");
+        }
+        return w.count;
+    }
+
+    @Benchmark
+    public long diffStreaming() throws IOException {
+        CountingWriter w = new CountingWriter();
+        StreamingXmlWriter xml = new StreamingXmlWriter(w);
+        for (int i = 0; i < paths.length; i++) {
+            xml.startElement(1, "path");
+            xml.cdataElement(2, "name", paths[i].getName());
+            xml.textElement(2, "action", paths[i].getActionDescription());
+            xml.endElement(1, "path", true);
+        }
+        return w.count;
+    }
+
+    /**
+     * The DOM based implementation SvnChangeLogWriter used before.
+     */
+    private static class DomChangeLogWriter {
+        private static final DOMElementWriter DOM_WRITER =
+            new DOMElementWriter();
+
+        static void printChangeLog(PrintWriter output, SvnEntry[] entries)
+            throws IOException {
+            SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd");
+            SimpleDateFormat time = new SimpleDateFormat("HH:mm");
+            output.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            Document doc = DOMUtils.newDocument();
+            Element root = doc.createElement("changelog");
+            DOM_WRITER.openElement(root, output, 0, "\t");
+            output.println();
+            for (int i = 0; i < entries.length; i++) {
+                SvnEntry entry = entries[i];
+                Element ent = doc.createElement("entry");
+                DOMUtils.appendTextElement(ent, "date",
+                                           date.format(entry.getDate()));
+                DOMUtils.appendTextElement(ent, "time",
+                                           time.format(entry.getDate()));
+                DOMUtils.appendCDATAElement(ent, "author", entry.getAuthor());
+                DOMUtils.appendTextElement(ent, "revision",
+                                           entry.getRevision());
+                SvnEntry.Path[] p = entry.getPaths();
+                for (int j = 0; j < p.length; j++) {
+                    Element path = DOMUtils.createChildElement(ent, "path");
+                    DOMUtils.appendCDATAElement(path, "name", p[j].getName());
+                    DOMUtils.appendTextElement(path, "action",
+                                               p[j].getActionDescription());
+                }
+                DOMUtils.appendCDATAElement(ent, "message",
+                                            entry.getMessage());
+                DOM_WRITER.write(ent, output, 1, "\t");
+            }
+            DOM_WRITER.closeElement(root, output, 0, "\t",
+                                    entries.length > 0);
+            output.flush();
+        }
+    }
+
+    /**
+     * Discards everything but counts the characters.
+     */
+    private static class CountingWriter extends Writer {
+        private long count;
+
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        public void write(int c) {
+            count++;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,26 @@
+#!/bin/sh
+#  Licensed to the Apache Software Foundation (ASF) under one or more
+#  contributor license agreements.  See the NOTICE file distributed with
+#  this work for additional information regarding copyright ownership.
+#  The ASF licenses this file to You under the Apache License, Version 2.0
+#  (the "License"); you may not use this file except in compliance with
+#  the License.  You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+#  Unless required by applicable law or agreed to in writing, software
+#  distributed under the License is distributed on an "AS IS" BASIS,
+#  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#  See the License for the specific language governing permissions and
+#  limitations under the License.
+
+# Stands in for svn when testing the response cache: records each
+# invocation in calls.txt inside the working directory.
+echo "$@" >> calls.txt
+if [ "$1" = "info" ]; then
+  echo "URL: $2"
+  echo "Repository UUID: 00000000-0000-0000-0000-000000000000"
+  echo "Revision: 5"
+else
+  echo "contents of $*"
+fi
@@ -0,0 +1,32 @@
+#!/bin/sh
+#  Licensed to the Apache Software Foundation (ASF) under one or more
+#  contributor license agreements.  See the NOTICE file distributed with
+#  this work for additional information regarding copyright ownership.
+#  The ASF licenses this file to You under the Apache License, Version 2.0
+#  (the "License"); you may not use this file except in compliance with
+#  the License.  You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+#  Unless required by applicable law or agreed to in writing, software
+#  distributed under the License is distributed on an "AS IS" BASIS,
+#  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#  See the License for the specific language governing permissions and
+#  limitations under the License.
+
+# Stands in for svn when testing the revision index: prints the
+# svn log --quiet output of the revisions 1 to 3 inside the range
+# passed as "log --quiet --revision FIRST:LAST URL".
+first=${4%:*}
+last=${4#*:}
+echo "------------------------------------------------------------------------"
+for r in 1 2 3; do
+  if [ $r -ge $first ] && [ $r -le $last ]; then
+    case $r in
+      1) echo "r1 | alice | 2020-01-01 10:00:00 +0000 (Wed, 01 Jan 2020)";;
+      2) echo "r2 | bob | 2020-01-02 12:00:00 +0200 (Thu, 02 Jan 2020)";;
+      3) echo "r3 | carol | 2020-01-03 10:00:00 -0130 (Fri, 03 Jan 2020)";;
+    esac
+    echo "------------------------------------------------------------------------"
+  fi
+done
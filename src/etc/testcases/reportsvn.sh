@@ -0,0 +1,62 @@
+#!/bin/sh
+#  Licensed to the Apache Software Foundation (ASF) under one or more
+#  contributor license agreements.  See the NOTICE file distributed with
+#  this work for additional information regarding copyright ownership.
+#  The ASF licenses this file to You under the Apache License, Version 2.0
+#  (the "License"); you may not use this file except in compliance with
+#  the License.  You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+#  Unless required by applicable law or agreed to in writing, software
+#  distributed under the License is distributed on an "AS IS" BASIS,
+#  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#  See the License for the specific language governing permissions and
+#  limitations under the License.
+
+# Stands in for svn when testing the report formats: prints a diff
+# summary relative to the first URL and an XML log whose names and
+# message contain commas, quotes, line breaks and U+2028.
+LS=`printf '\342\200\250'`
+for a in "$@"; do
+  case "$a" in
+    *://*)
+      if [ -z "$url" ]; then
+        url=${a%/}
+      fi;;
+    diff|log|info)
+      if [ -z "$sub" ]; then
+        sub=$a
+      fi;;
+  esac
+done
+if [ "$sub" = "diff" ]; then
+  echo '<?xml version="1.0" encoding="UTF-8"?>'
+  echo '<diff>'
+  echo '<paths>'
+  echo "<path props=\"none\" kind=\"file\" item=\"added\">$url/a,b.txt</path>"
+  echo "<path props=\"none\" kind=\"file\" item=\"modified\">$url/say%20%22hi%22.txt</path>"
+  echo "<path props=\"none\" kind=\"file\" item=\"deleted\">$url/two%0Alines.txt</path>"
+  echo "<path props=\"none\" kind=\"file\" item=\"modified\">$url/line%E2%80%A8separator.txt</path>"
+  echo '</paths>'
+  echo '</diff>'
+elif [ "$sub" = "log" ]; then
+  echo '<?xml version="1.0" encoding="UTF-8"?>'
+  echo '<log>'
+  echo '<logentry revision="2">'
+  echo '<author>alice</author>'
+  echo '<date>2020-01-02T10:00:00.000000Z</date>'
+  echo '<paths>'
+  echo '<path action="A" kind="file">/trunk/a,b.txt</path>'
+  echo '<path action="M" kind="file">/trunk/say "hi".txt</path>'
+  echo '</paths>'
+  echo '<msg>fix "quoted", comma'
+  echo "line${LS}separator</msg>"
+  echo '</logentry>'
+  echo '</log>'
+elif [ "$sub" = "info" ]; then
+  echo "URL: $url"
+  echo "Repository Root: file:///repo"
+  echo "Repository UUID: 00000000-0000-0000-0000-000000000000"
+  echo "Revision: 5"
+fi
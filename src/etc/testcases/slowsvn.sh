@@ -0,0 +1,39 @@
+#!/bin/sh
+#  Licensed to the Apache Software Foundation (ASF) under one or more
+#  contributor license agreements.  See the NOTICE file distributed with
+#  this work for additional information regarding copyright ownership.
+#  The ASF licenses this file to You under the Apache License, Version 2.0
+#  (the "License"); you may not use this file except in compliance with
+#  the License.  You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+#  Unless required by applicable law or agreed to in writing, software
+#  distributed under the License is distributed on an "AS IS" BASIS,
+#  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#  See the License for the specific language governing permissions and
+#  limitations under the License.
+
+# Stands in for svn when testing hedged invocations: the first
+# invocation in a directory hangs before it writes anything, all later
+# ones answer at once.  For cat the first invocation fails after a
+# second and the later ones succeed after two seconds.
+if [ "$1" = "cat" ]; then
+  if [ -f hedge.marker ]; then
+    sleep 2
+    echo "slow but fine"
+  else
+    touch hedge.marker
+    sleep 1
+    echo "broken" >&2
+    exit 1
+  fi
+  exit 0
+fi
+if [ -f hedge.marker ]; then
+  echo "fast"
+else
+  touch hedge.marker
+  sleep 10
+  echo "slow"
+fi
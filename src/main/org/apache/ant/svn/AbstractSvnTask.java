@@ -45,7 +45,7 @@ public abstract class AbstractSvnTask extends Task {
     private Commandline cmd = new Commandline();
 
     /** list of Commandline children */
-    private Vector vecCommandlines = new Vector();
+    private Vector<Commandline> vecCommandlines = new Vector<Commandline>();
 
     /**
      * the URL the subcommand should apply to.
@@ -135,6 +135,71 @@ public abstract class AbstractSvnTask extends Task {
     private OutputStream outputStream;
     private OutputStream errorStream;
 
+    /**
+     * prefix of the properties that receive the metrics.
+     */
+    private String metricsPrefix;
+
+    /**
+     * file the metrics get appended to.
+     */
+    private File metricsFile;
+
+    /**
+     * metrics of the current execution.
+     */
+    private SvnMetrics metrics;
+
+    /**
+     * the svn executable.
+     */
+    private String executable = "svn";
+
+    /**
+     * whether read-only subcommands may be started a second time.
+     */
+    private boolean hedge = false;
+
+    /**
+     * milliseconds to wait for output before svn is started a second
+     * time, used until enough latencies are known.
+     */
+    private long hedgeDelay = DEFAULT_HEDGE_DELAY;
+
+    /**
+     * percentile of the known latencies to wait for output before
+     * svn is started a second time.
+     */
+    private int hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    private static final long DEFAULT_HEDGE_DELAY = 2000;
+    private static final int DEFAULT_HEDGE_PERCENTILE = 95;
+
+    /**
+     * directory holding the output of read-only commands.
+     */
+    private File responseCache;
+
+    /**
+     * bytes the cached output may take.
+     */
+    private long responseCacheSize = SvnResponseCache.DEFAULT_MAX_SIZE;
+
+    /**
+     * number of command lines to run at the same time.
+     */
+    private int threads = 1;
+
+    /**
+     * run in the background until svnwait joins the task.
+     */
+    private boolean async = false;
+
+    /**
+     * the id svnwait uses.
+     */
+    private String id;
+
     /** empty no-arg constructor*/
     public AbstractSvnTask() {
         super();
@@ -246,6 +311,22 @@ public abstract class AbstractSvnTask extends Task {
      * @throws BuildException if failonError is set to true and the svn command fails
      */
     protected void runCommand(Commandline toExecute) throws BuildException {
+        runCommand(toExecute, getExecuteStreamHandler());
+    }
+
+    /**
+     * Sets up the environment for toExecute and then runs it using
+     * the given handler for its output.
+     * @param toExecute the command line to execute
+     * @param handler handles the output and error streams of the
+     * process
+     * @return the exit code of svn or {@link Execute#INVALID
+     * Execute.INVALID} if it could not be run
+     * @throws BuildException if failonError is set to true and the svn command fails
+     */
+    protected int runCommand(Commandline toExecute,
+                             ExecuteStreamHandler handler)
+        throws BuildException {
         Environment env = new Environment();
         Environment.Variable lang = new Environment.Variable();
         lang.setKey("LC_ALL");
@@ -255,29 +336,71 @@ public abstract class AbstractSvnTask extends Task {
         lang.setKey("LANG");
         lang.setValue("C");
 
-        //
-        // Just call the getExecuteStreamHandler() and let it handle
-        //     the semantics of instantiation or retrieval.
-        //
-        Execute exe = new Execute(getExecuteStreamHandler(), null);
-
-        exe.setAntRun(getProject());
-        if (dest == null) {
-            dest = getProject().getBaseDir();
+        initDest();
+
+        SvnResponseCache cache = null;
+        String cacheKey = null;
+        SvnResponseCache.Recorder recorder = null;
+        if (responseCache != null) {
+            String[] pegged =
+                SvnResponseCache.withPegs(toExecute.getArguments());
+            if (pegged != null) {
+                Commandline c = new Commandline();
+                c.setExecutable(toExecute.getExecutable());
+                c.addArguments(pegged);
+                toExecute = c;
+            }
+            cache = new SvnResponseCache(responseCache, responseCacheSize);
+            cacheKey = cache.getKey(this, toExecute.getArguments());
+            if (cacheKey != null) {
+                recorder = cache.record(cacheKey, handler);
+            }
         }
 
-        if (!dest.exists()) {
-            dest.mkdirs();
-        }
+        SvnMetrics.Monitor monitor =
+            getMetrics().monitor(recorder != null ? recorder : handler);
+        Execute exe = new Execute(monitor, null);
 
+        exe.setAntRun(getProject());
         exe.setWorkingDirectory(dest);
         exe.setCommandline(toExecute.getCommandline());
         exe.setEnvironment(env.getVariables());
 
         try {
             String actualCommandLine = executeToString(exe);
+            if (cacheKey != null && cache.replay(cacheKey, handler)) {
+                log(actualCommandLine + " (cached)", Project.MSG_VERBOSE);
+                getMetrics().cached();
+                return 0;
+            }
             log(actualCommandLine, Project.MSG_VERBOSE);
-            int retCode = exe.execute();
+            int retCode = Execute.INVALID;
+            Object event = SvnFlightRecorder.begin(SvnFlightRecorder.COMMAND);
+            monitor.started();
+            try {
+                if (hedge
+                    && HedgedExecution.isReadOnly(toExecute.getArguments())) {
+                    retCode = new HedgedExecution(this, exe.getCommandline(),
+                                                  exe.getEnvironment(), dest)
+                        .execute(monitor,
+                                 HedgedExecution.getDelay(hedgePercentile,
+                                                          hedgeDelay));
+                } else {
+                    retCode = exe.execute();
+                }
+            } finally {
+                monitor.finished();
+                if (recorder != null) {
+                    recorder.commit(retCode);
+                }
+                if (event != null) {
+                    SvnFlightRecorder.commit(event, new Object[] {
+                        Commandline.toString(exe.getCommandline()),
+                        Integer.valueOf(retCode),
+                        Long.valueOf(monitor.getStdoutBytes()),
+                        Long.valueOf(monitor.getStderrBytes())});
+                }
+            }
             log("retCode=" + retCode, Project.MSG_DEBUG);
             /*Throw an exception if svn exited with error. (Iulian)*/
             if (failOnError && Execute.isFailure(retCode)) {
@@ -287,6 +410,7 @@ public abstract class AbstractSvnTask extends Task {
                                          + "Command line was ["
                                          + actualCommandLine + "]", getLocation());
             }
+            return retCode;
         } catch (IOException e) {
             if (failOnError) {
                 throw new BuildException(e, getLocation());
@@ -310,6 +434,88 @@ public abstract class AbstractSvnTask extends Task {
                 log("Caught exception: " + e.getMessage(), Project.MSG_WARN);
             }
         }
+        return Execute.INVALID;
+    }
+
+    /**
+     * Defaults the working directory to the project's base directory
+     * and creates it if necessary.
+     */
+    private void initDest() {
+        if (dest == null) {
+            dest = getProject().getBaseDir();
+        }
+
+        if (!dest.exists()) {
+            dest.mkdirs();
+        }
+    }
+
+    /**
+     * The metrics of the current execution.
+     */
+    synchronized SvnMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new SvnMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Starts collecting the metrics of a new execution.
+     */
+    synchronized void startMetrics() {
+        metrics = new SvnMetrics();
+    }
+
+    /**
+     * Sets the metrics properties and appends them to the metrics
+     * file if requested.
+     */
+    void publishMetrics() {
+        SvnMetrics m = getMetrics();
+        if (!AsyncExecution.isBackground(this)) {
+            setMetricsProperties();
+        }
+        if (metricsFile != null) {
+            try {
+                m.append(metricsFile, getTaskName(),
+                         getOwningTarget() == null ? null
+                         : getOwningTarget().getName());
+            } catch (IOException e) {
+                log("Failed to write metrics to " + metricsFile + ": "
+                    + e.getMessage(), Project.MSG_WARN);
+            }
+        }
+    }
+
+    /**
+     * Sets the metrics properties, svnwait sets them for tasks that
+     * have been executed in the background.
+     */
+    void setMetricsProperties() {
+        if (metricsPrefix != null) {
+            getMetrics().setProperties(getProject(), metricsPrefix);
+        }
+    }
+
+    /**
+     * Starts executing the task in a background thread if async has
+     * been set.  Subclasses overriding execute must return at once
+     * if this returns true, execute is going to be invoked again in
+     * the background.
+     * @return whether the task is executing in the background
+     * @throws BuildException if id hasn't been set
+     */
+    protected boolean executeInBackground() throws BuildException {
+        if (!async || AsyncExecution.isBackground(this)) {
+            return false;
+        }
+        if (id == null) {
+            throw new BuildException("async requires an id", getLocation());
+        }
+        AsyncExecution.start(this, id);
+        return true;
     }
 
     /**
@@ -317,35 +523,65 @@ public abstract class AbstractSvnTask extends Task {
      * @throws BuildException if failonerror is set to true and the svn command fails.
      */
     public void execute() throws BuildException {
-
-        String savedCommand = getSubCommand();
-
-        if (this.getSubCommand() == null && vecCommandlines.size() == 0) {
-            // re-implement legacy behaviour:
-            this.setSubCommand(AbstractSvnTask.DEFAULT_SUBCOMMAND);
+        if (executeInBackground()) {
+            return;
+        }
+        startMetrics();
+        try {
+            executeCommands();
+        } finally {
+            publishMetrics();
         }
+    }
 
+    /**
+     * Runs the subcommand and all nested command lines.
+     * @throws BuildException if failonerror is set to true and the svn command fails.
+     */
+    protected void executeCommands() throws BuildException {
         String c = this.getSubCommand();
-        Commandline cloned = null;
-        if (c != null) {
-            cloned = (Commandline) cmd.clone();
-            cloned.createArgument(true).setLine(c);
-            if (svnURL != null) {
-                cloned.createArgument().setValue(svnURL);
-            }
-            this.addConfiguredCommandline(cloned, true);
+        if (c == null && vecCommandlines.size() == 0) {
+            // re-implement legacy behaviour:
+            c = AbstractSvnTask.DEFAULT_SUBCOMMAND;
         }
+        executeCommands(c != null ? new SvnCommand(c) : null);
+    }
 
+    /**
+     * Runs the given command and all nested command lines.
+     *
+     * <p>The command line is built for this execution only, neither
+     * the arguments configured for the task nor the nested command
+     * lines are modified.</p>
+     *
+     * <p>If threads has been set the commands run concurrently,
+     * unless a handler for svn's output has been set.</p>
+     *
+     * @param command the command, may be null
+     * @throws BuildException if failonerror is set to true and the svn command fails.
+     */
+    void executeCommands(final SvnCommand command) throws BuildException {
         try {
-            for (int i = 0; i < vecCommandlines.size(); i++) {
-                this.runCommand((Commandline) vecCommandlines.elementAt(i));
+            final Vector<Commandline> commands =
+                new Vector<Commandline>(vecCommandlines);
+            if (command != null) {
+                final Commandline c =
+                    command.toCommandline(revision, cmd.getArguments(),
+                                          svnURL);
+                configureCommandline(c);
+                commands.insertElementAt(c, 0);
             }
-        } finally {
-            if (cloned != null) {
-                removeCommandline(cloned);
+            if (threads > 1 && executeStreamHandler == null
+                && commands.size() > 1) {
+                initDest();
+                new ParallelCommands(this, threads)
+                    .run(commands.toArray(new Commandline[commands.size()]));
+            } else {
+                for (int i = 0; i < commands.size(); i++) {
+                    this.runCommand(commands.elementAt(i));
+                }
             }
-            setSubCommand(savedCommand);
-
+        } finally {
             if (outputStream != null) {
                 try {
                     outputStream.close();
@@ -452,8 +688,6 @@ public abstract class AbstractSvnTask extends Task {
         // Check if not real revision => set it to null
         if (p != null && p.trim().length() > 0) {
             revision = p;
-            addSubCommandArgument("--revision");
-            addSubCommandArgument(p);
         }
     }
 
@@ -608,6 +842,135 @@ public abstract class AbstractSvnTask extends Task {
         this.append = value;
     }
 
+    /**
+     * Prefix of the properties that receive the metrics of the
+     * task's execution.
+     * @param prefix the prefix, a dot is added
+     */
+    public void setMetricsPrefix(String prefix) {
+        this.metricsPrefix = prefix;
+    }
+
+    /**
+     * File to append the metrics of the task's execution to, as a
+     * single line holding a JSON object.
+     * @param file the file
+     */
+    public void setMetricsFile(File file) {
+        this.metricsFile = file;
+    }
+
+    /**
+     * The svn executable, defaults to <code>svn</code> on the PATH.
+     * @param executable the executable
+     */
+    public void setExecutable(String executable) {
+        this.executable = executable;
+    }
+
+    /**
+     * The svn executable.
+     * @return the executable
+     */
+    String getExecutable() {
+        return executable;
+    }
+
+    /**
+     * Whether a read-only subcommand (log, diff, info, list, cat) is
+     * started a second time if svn doesn't write any output for a
+     * while.  The first process to finish wins, the other is killed.
+     * Defaults to false.
+     * @param hedge whether to start slow subcommands a second time
+     */
+    public void setHedge(boolean hedge) {
+        this.hedge = hedge;
+    }
+
+    /**
+     * Milliseconds to wait for output before svn is started a second
+     * time as long as too few latencies have been seen to use
+     * hedgepercentile.  Defaults to 2000.
+     * @param delay the delay in milliseconds
+     */
+    public void setHedgeDelay(long delay) {
+        if (delay < 0) {
+            throw new BuildException("hedgedelay must not be negative");
+        }
+        this.hedgeDelay = delay;
+    }
+
+    /**
+     * Percentile of the latencies of the first output seen so far
+     * that is used as delay before svn is started a second time.
+     * Defaults to 95.
+     * @param percentile the percentile
+     */
+    public void setHedgePercentile(int percentile) {
+        if (percentile < 1 || percentile > 100) {
+            throw new BuildException("hedgepercentile must be between 1"
+                                     + " and 100");
+        }
+        this.hedgePercentile = percentile;
+    }
+
+    /**
+     * Directory in which the output of read-only commands that only
+     * use numeric revisions is cached.  Not set by default, which
+     * disables the cache.
+     * @param dir the cache directory
+     */
+    public void setResponseCache(File dir) {
+        this.responseCache = dir;
+    }
+
+    /**
+     * Bytes the compressed output in the response cache may take,
+     * the least recently used output is deleted once the cache grows
+     * bigger.  Defaults to 100 MB.
+     * @param size the size in bytes
+     */
+    public void setResponseCacheSize(long size) {
+        if (size <= 0) {
+            throw new BuildException("responsecachesize must be positive");
+        }
+        this.responseCacheSize = size;
+    }
+
+    /**
+     * Number of command lines to run at the same time, defaults to
+     * 1.  The output of each command is buffered until all commands
+     * before it have completed.  Tasks that parse svn's output run
+     * their commands one after another.
+     * @param threads the number of svn processes
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Execute the task in a background thread, the build continues
+     * at once.  Use svnwait with the task's id to wait for it,
+     * failures and properties of the task become visible there.
+     * Defaults to false.
+     * @param async whether to execute in the background
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * The id svnwait uses to wait for the task, as usual it also
+     * makes the task a reference.
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
     /**
      * Stop the build process if the command exits with
      * a return code other than 0.
@@ -639,7 +1002,7 @@ public abstract class AbstractSvnTask extends Task {
         if (c == null) {
             return;
         }
-        c.setExecutable("svn");
+        c.setExecutable(executable);
         if (quiet) {
             c.createArgument(true).setValue("--quiet");
         }
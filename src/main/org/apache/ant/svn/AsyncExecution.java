@@ -0,0 +1,202 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.Project;
+
+/**
+ * A task executing in a background thread until {@link SvnWait
+ * svnwait} joins it.
+ *
+ * <p>The executions of a project are registered under the ids of
+ * their tasks in a project reference.  Executions nobody has waited
+ * for are joined when the build finishes.</p>
+ */
+final class AsyncExecution implements Runnable {
+
+    private static final String REFERENCE = "org.apache.ant.svn.async";
+
+    /**
+     * The task the current thread executes in the background.
+     */
+    private static final ThreadLocal<AbstractSvnTask> BACKGROUND =
+        new ThreadLocal<AbstractSvnTask>();
+
+    private static final Object LOCK = new Object();
+
+    private final AbstractSvnTask task;
+    private final String id;
+    private final Thread thread;
+    private Throwable failure;
+
+    private AsyncExecution(final AbstractSvnTask task, final String id) {
+        this.task = task;
+        this.id = id;
+        thread = new Thread(this, "svn " + id);
+    }
+
+    /**
+     * Starts executing the task in a background thread.
+     *
+     * @param task the task
+     * @param id the id svnwait uses to join the execution
+     * @throws BuildException if an execution with the same id is
+     * running
+     */
+    static void start(final AbstractSvnTask task, final String id)
+        throws BuildException {
+        final AsyncExecution execution = new AsyncExecution(task, id);
+        if (!getRegistry(task.getProject()).add(id, execution)) {
+            throw new BuildException("svn task " + id + " is still running",
+                                     task.getLocation());
+        }
+        task.log("Executing in the background", Project.MSG_VERBOSE);
+        execution.thread.start();
+    }
+
+    /**
+     * Whether the current thread executes the task in the background.
+     */
+    static boolean isBackground(final AbstractSvnTask task) {
+        return BACKGROUND.get() == task;
+    }
+
+    /**
+     * Removes an execution from the project.
+     *
+     * @return the execution or null if there isn't one with that id
+     */
+    static AsyncExecution remove(final Project project, final String id) {
+        return getRegistry(project).remove(id);
+    }
+
+    public void run() {
+        BACKGROUND.set(task);
+        try {
+            task.execute();
+        } catch (final Throwable t) {
+            failure = t;
+        }
+    }
+
+    /**
+     * Waits for the task to finish, sets the properties it has
+     * collected and throws the exception it has failed with.
+     *
+     * @throws BuildException if the task has failed
+     */
+    void join() throws BuildException {
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            throw new BuildException("interrupted while waiting for svn task "
+                                     + id, e);
+        }
+        task.setMetricsProperties();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private static Registry getRegistry(final Project project) {
+        synchronized (LOCK) {
+            Registry registry = (Registry) project.getReference(REFERENCE);
+            if (registry == null) {
+                registry = new Registry();
+                project.addReference(REFERENCE, registry);
+                project.addBuildListener(registry);
+            }
+            return registry;
+        }
+    }
+
+    /**
+     * The executions of a project by id, joins the remaining ones
+     * when the build finishes.
+     */
+    private static final class Registry implements BuildListener {
+        private final Hashtable<String, AsyncExecution> executions =
+            new Hashtable<String, AsyncExecution>();
+
+        /**
+         * Registers an execution unless one with the same id is
+         * registered already.
+         *
+         * @return whether the execution has been registered
+         */
+        synchronized boolean add(final String id,
+                                 final AsyncExecution execution) {
+            if (executions.containsKey(id)) {
+                return false;
+            }
+            executions.put(id, execution);
+            return true;
+        }
+
+        synchronized AsyncExecution remove(final String id) {
+            return executions.remove(id);
+        }
+
+        public void buildFinished(final BuildEvent event) {
+            final ArrayList<AsyncExecution> remaining;
+            synchronized (this) {
+                remaining = new ArrayList<AsyncExecution>(executions.values());
+                executions.clear();
+            }
+            for (final Iterator<AsyncExecution> i = remaining.iterator();
+                 i.hasNext(); ) {
+                final AsyncExecution execution = i.next();
+                execution.task.log("Nobody has waited for svn task "
+                                   + execution.id, Project.MSG_WARN);
+                try {
+                    execution.join();
+                } catch (final RuntimeException e) {
+                    execution.task.log(e.getMessage(), Project.MSG_WARN);
+                }
+            }
+        }
+
+        public void buildStarted(final BuildEvent event) {
+        }
+
+        public void targetStarted(final BuildEvent event) {
+        }
+
+        public void targetFinished(final BuildEvent event) {
+        }
+
+        public void taskStarted(final BuildEvent event) {
+        }
+
+        public void taskFinished(final BuildEvent event) {
+        }
+
+        public void messageLogged(final BuildEvent event) {
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Selects the entries of a changelog by author, changed paths and
+ * commit message.
+ *
+ * <p>An entry is accepted if all criteria that have been specified
+ * match.  Path patterns use Ant's syntax and are matched against the
+ * paths inside the repository as reported by svn log, e.g.
+ * <code>/trunk/src/**</code>; a path is selected if it matches one
+ * of the includes (if any) and none of the excludes and an entry
+ * matches if at least one of its paths is selected.</p>
+ *
+ * <p>Patterns are tokenized and the regular expression is compiled
+ * when the attributes are set.</p>
+ */
+public class ChangeLogFilter implements SvnEntryFilter {
+
+    private static final String FROM = " (from ";
+
+    private HashSet<String> authors;
+    private TokenizedPattern[] includes;
+    private TokenizedPattern[] excludes;
+    private Pattern message;
+
+    /**
+     * Only accept entries by one of the given authors.
+     *
+     * @param authors comma or space separated list of the authors'
+     * ids as known to svn
+     */
+    public void setAuthors(final String authors) {
+        this.authors = new HashSet<String>();
+        final StringTokenizer st = new StringTokenizer(authors, ", \t\n\r");
+        while (st.hasMoreTokens()) {
+            this.authors.add(st.nextToken());
+        }
+    }
+
+    /**
+     * Only accept entries that have changed paths matching one of the
+     * given patterns.
+     *
+     * @param patterns comma or space separated list of patterns
+     */
+    public void setIncludes(final String patterns) {
+        includes = tokenizePatterns(patterns);
+    }
+
+    /**
+     * Ignore changed paths that match one of the given patterns.
+     *
+     * @param patterns comma or space separated list of patterns
+     */
+    public void setExcludes(final String patterns) {
+        excludes = tokenizePatterns(patterns);
+    }
+
+    /**
+     * Only accept entries with a commit message containing a match
+     * for the given regular expression.
+     *
+     * @param regex a regular expression as understood by
+     * java.util.regex
+     */
+    public void setMessage(final String regex) {
+        try {
+            message = Pattern.compile(regex);
+        } catch (final PatternSyntaxException e) {
+            throw new BuildException("invalid message pattern " + regex, e);
+        }
+    }
+
+    /**
+     * Whether entries by the given author may be accepted at all.
+     *
+     * @param author the author as reported by svn
+     */
+    public boolean acceptsAuthor(final String author) {
+        return null == authors || authors.contains(author);
+    }
+
+    /**
+     * Whether an entry is accepted.
+     *
+     * @param author the author as reported by svn
+     * @param msg the commit message
+     * @param paths the changed paths
+     */
+    public boolean accepts(final String author, final CharSequence msg,
+                           final Collection<SvnEntry.Path> paths) {
+        if (!acceptsAuthor(author)) {
+            return false;
+        }
+        if (null != message && !message.matcher(msg).find()) {
+            return false;
+        }
+        if (null == includes && null == excludes) {
+            return true;
+        }
+        for (Iterator<SvnEntry.Path> i = paths.iterator(); i.hasNext(); ) {
+            if (isSelected(i.next().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSelected(final String name) {
+        int end = name.indexOf(FROM);
+        if (end == -1) {
+            end = name.length();
+        }
+        final TokenizedPath path =
+            new TokenizedPath(toRelative(name.substring(0, end)));
+        if (null != includes && !matchesAny(includes, path)) {
+            return false;
+        }
+        return null == excludes || !matchesAny(excludes, path);
+    }
+
+    private static boolean matchesAny(final TokenizedPattern[] patterns,
+                                      final TokenizedPath path) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matchPath(path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TokenizedPattern[] tokenizePatterns(final String patterns) {
+        final ArrayList<TokenizedPattern> l =
+            new ArrayList<TokenizedPattern>();
+        final StringTokenizer st = new StringTokenizer(patterns, ", \t\n\r");
+        while (st.hasMoreTokens()) {
+            String pattern = toRelative(st.nextToken().replace('\\', '/'));
+            if (pattern.endsWith(File.separator)) {
+                // same as for filesets
+                pattern += "**";
+            }
+            l.add(new TokenizedPattern(pattern));
+        }
+        return l.toArray(new TokenizedPattern[l.size()]);
+    }
+
+    /**
+     * Strips leading slashes so repository paths and patterns match
+     * with or without them and uses the platform's separator Ant's
+     * matcher expects.
+     */
+    private static String toRelative(final String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        return path.substring(start).replace('/', File.separatorChar);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.File;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * A working copy or URL whose log becomes part of a changelog that
+ * spans several repositories.
+ */
+public class ChangeLogRepository {
+
+    private File dir;
+    private String url;
+    private String name;
+
+    /**
+     * The working copy to run svn log on.
+     *
+     * @param dir the working copy
+     */
+    public void setDir(final File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * The URL to run svn log on.
+     *
+     * @param url the URL
+     */
+    public void setUrl(final String url) {
+        this.url = url;
+    }
+
+    /**
+     * The name to use in the repository attribute of the entries.
+     *
+     * @param name the name, defaults to the URL or the name of the
+     * working copy's directory
+     */
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name to use in the repository attribute of the entries.
+     */
+    public String getName() {
+        if (null != name) {
+            return name;
+        }
+        return null != url ? url : dir.getName();
+    }
+
+    /**
+     * The working copy or URL to pass to svn log.
+     */
+    String getTarget() {
+        return null != url ? url : dir.getAbsolutePath();
+    }
+
+    /**
+     * Checks that exactly one of dir and url has been specified.
+     *
+     * @throws BuildException if the repository is not specified
+     * correctly
+     */
+    void validate() throws BuildException {
+        if ((null == dir) == (null == url)) {
+            throw new BuildException("exactly one of dir and url must be set"
+                                     + " on a repository");
+        }
+        if (null != dir && !dir.exists()) {
+            throw new BuildException("Cannot find working copy "
+                                     + dir.getAbsolutePath());
+        }
+    }
+}
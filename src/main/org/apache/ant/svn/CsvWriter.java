@@ -0,0 +1,175 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a changelog or diff as comma separated values following RFC
+ * 4180, one record per changed path.
+ *
+ * <p>The columns of a changelog are date, time, author, revision,
+ * repository, action, path and message, an entry without any paths
+ * is written as a single record with empty action and path.
+ * Fields containing commas, quotes or line breaks are quoted.</p>
+ */
+final class CsvWriter implements EntryWriter {
+
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private static final String HEADER =
+        "date,time,author,revision,repository,action,path,message";
+
+    private final SimpleDateFormat outputDate =
+        new SimpleDateFormat("yyyy-MM-dd");
+    private final SimpleDateFormat outputTime = new SimpleDateFormat("HH:mm");
+
+    /**
+     * Writes the header line.
+     */
+    public void startChangeLog(final PrintWriter output) {
+        output.write(HEADER);
+        output.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a record for each path of the entry.
+     */
+    public void printEntry(final PrintWriter output, final SvnEntry entry)
+        throws IOException {
+        final String date = null == entry.getDate() ? null
+            : outputDate.format(entry.getDate());
+        final String time = null == entry.getDate() ? null
+            : outputTime.format(entry.getDate());
+        final SvnEntry.Path[] paths = entry.getPaths();
+        int i = 0;
+        do {
+            writeField(output, date);
+            output.write(',');
+            writeField(output, time);
+            output.write(',');
+            writeField(output, entry.getAuthor());
+            output.write(',');
+            writeField(output, entry.getRevision());
+            output.write(',');
+            writeField(output, entry.getRepository());
+            output.write(',');
+            if (i < paths.length) {
+                writeField(output, paths[i].getActionDescription());
+                output.write(',');
+                writeField(output, paths[i].getName());
+            } else {
+                output.write(',');
+            }
+            output.write(',');
+            writeField(output, entry.getMessage());
+            output.write(LINE_SEPARATOR);
+        } while (++i < paths.length);
+    }
+
+    /**
+     * Flushes and closes the writer.
+     */
+    public void endChangeLog(final PrintWriter output) {
+        output.flush();
+        output.close();
+    }
+
+    /**
+     * Writes the header line of a diff.
+     *
+     * @param output writer to which to send output
+     * @param attributes properties of the diff that become the first
+     * columns, sorted by name, null values are skipped
+     */
+    static void printPathHeader(final Writer output,
+                                final Map<String, String> attributes)
+        throws IOException {
+        for (Iterator<Map.Entry<String, String>> i =
+                 new TreeMap<String, String>(attributes).entrySet().iterator();
+             i.hasNext(); ) {
+            final Map.Entry<String, String> e = i.next();
+            if (null != e.getValue()) {
+                writeField(output, e.getKey());
+                output.write(',');
+            }
+        }
+        output.write("action,path");
+        output.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a changed path of a diff as a record.
+     *
+     * @param output writer to which to send output
+     * @param attributes properties of the diff that become the first
+     * columns, sorted by name, null values are skipped
+     * @param path the path
+     */
+    static void printPath(final Writer output,
+                          final Map<String, String> attributes,
+                          final SvnEntry.Path path) throws IOException {
+        for (Iterator<String> i =
+                 new TreeMap<String, String>(attributes).values().iterator();
+             i.hasNext(); ) {
+            final String value = i.next();
+            if (null != value) {
+                writeField(output, value);
+                output.write(',');
+            }
+        }
+        writeField(output, path.getActionDescription());
+        output.write(',');
+        writeField(output, path.getName());
+        output.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a field, quoted if necessary, nothing if s is null.
+     */
+    private static void writeField(final Writer output, final String s)
+        throws IOException {
+        if (null == s) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; !quote && i < s.length(); i++) {
+            final char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            output.write(s);
+            return;
+        }
+        output.write('"');
+        int start = 0;
+        for (int i = s.indexOf('"'); i > -1; i = s.indexOf('"', start)) {
+            output.write(s, start, i + 1 - start);
+            output.write('"');
+            start = i + 1;
+        }
+        output.write(s, start, s.length() - start);
+        output.write('"');
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes a changelog one entry at a time.
+ */
+interface EntryWriter {
+
+    /**
+     * Print out the start of the changelog.
+     *
+     * @param output writer to which to send output.
+     */
+    void startChangeLog(PrintWriter output) throws IOException;
+
+    /**
+     * Print out an individual entry in changelog.
+     *
+     * @param output writer to which to send output.
+     * @param entry the entry to print
+     */
+    void printEntry(PrintWriter output, SvnEntry entry) throws IOException;
+
+    /**
+     * Print out the end of the changelog and close the writer.
+     *
+     * @param output writer to which to send output.
+     */
+    void endChangeLog(PrintWriter output) throws IOException;
+}
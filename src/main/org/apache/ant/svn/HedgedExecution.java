@@ -0,0 +1,491 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.taskdefs.Execute;
+import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Runs a read-only svn command and starts a second, identical
+ * process if the first one hasn't written anything after a delay.
+ *
+ * <p>As long as the first process starts writing in time, its output
+ * is streamed to the stream handler just like {@link Execute} would
+ * do it.  Once a second process has been started, the output of both
+ * processes is buffered in temporary files, the first process to
+ * exit with 0 wins and only its output is passed on to the stream
+ * handler.  The other process gets killed.  If both fail, the one
+ * that has failed first is used.</p>
+ *
+ * <p>The delay is a percentile of the time it took previous processes
+ * to write their first output, the samples are shared by all tasks
+ * running in the same VM.</p>
+ */
+final class HedgedExecution {
+
+    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
+
+    /** subcommands that may safely be run twice */
+    private static final Set<String> READ_ONLY =
+        new HashSet<String>(Arrays.asList(new String[] {
+            "log", "diff", "di", "info", "list", "ls", "cat",
+        }));
+
+    /** global options that take an argument */
+    private static final Set<String> WITH_ARGUMENT =
+        new HashSet<String>(Arrays.asList(new String[] {
+            "--file", "--targets",
+        }));
+
+    /** samples required before the percentile is used */
+    private static final int MIN_SAMPLES = 5;
+    private static final int MAX_SAMPLES = 100;
+
+    /** latencies of the first output in milliseconds, a ring buffer */
+    private static final long[] SAMPLES = new long[MAX_SAMPLES];
+    private static int sampleCount = 0;
+    private static int nextSample = 0;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Task task;
+    private final String[] command;
+    private final String[] env;
+    private final File dir;
+
+    /** guards the state of the attempts */
+    private final Object lock = new Object();
+    /** whether the first attempt's output is passed on directly */
+    private boolean direct;
+    /** whether the output gets buffered as a second attempt is made */
+    private boolean hedged;
+
+    /**
+     * @param task the task to log with
+     * @param command the command line
+     * @param env the environment of the process
+     * @param dir the working directory
+     */
+    HedgedExecution(final Task task, final String[] command,
+                    final String[] env, final File dir) {
+        this.task = task;
+        this.command = command;
+        this.env = env;
+        this.dir = dir;
+    }
+
+    /**
+     * Whether the svn subcommand of the given arguments doesn't
+     * modify anything and thus may be run twice.
+     *
+     * @param arguments the arguments of svn without the executable
+     */
+    static boolean isReadOnly(final String[] arguments) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (WITH_ARGUMENT.contains(arguments[i])) {
+                i++;
+            } else if (!arguments[i].startsWith("-")) {
+                return READ_ONLY.contains(arguments[i]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The delay after which a second process is started.
+     *
+     * @param percentile percentile of the latencies of the first
+     * output seen so far
+     * @param fallback delay in milliseconds used as long as there
+     * are too few samples
+     */
+    static synchronized long getDelay(final int percentile,
+                                      final long fallback) {
+        if (sampleCount < MIN_SAMPLES) {
+            return fallback;
+        }
+        final long[] sorted = new long[sampleCount];
+        System.arraycopy(SAMPLES, 0, sorted, 0, sampleCount);
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100.0 * sampleCount)
+            - 1;
+        return sorted[Math.max(0, Math.min(sampleCount - 1, index))];
+    }
+
+    /**
+     * Adds a latency of the first output.
+     */
+    private static synchronized void addSample(final long millis) {
+        SAMPLES[nextSample] = millis;
+        nextSample = (nextSample + 1) % MAX_SAMPLES;
+        sampleCount = Math.min(sampleCount + 1, MAX_SAMPLES);
+    }
+
+    /**
+     * Runs the command.
+     *
+     * @param handler receives the output of the winning process
+     * @param delay milliseconds to wait for the first output before
+     * a second process gets started
+     * @return the exit code of the winning process
+     */
+    int execute(final ExecuteStreamHandler handler, final long delay)
+        throws IOException {
+        final Attempt first = new Attempt();
+        try {
+            synchronized (lock) {
+                final long deadline = System.currentTimeMillis() + delay;
+                long wait = delay;
+                while (first.firstRead == Attempt.NOT_YET && wait > 0) {
+                    lock.wait(wait);
+                    wait = deadline - System.currentTimeMillis();
+                }
+                // otherwise the first attempt has decided to go direct
+                hedged = !direct;
+            }
+            if (direct) {
+                if (first.latency >= 0) {
+                    addSample(first.latency);
+                }
+                return first.stream(handler);
+            }
+
+            task.log("svn hasn't written anything after " + delay
+                     + " ms, starting a second process", Project.MSG_VERBOSE);
+            first.drainErrors();
+            final Attempt second = new Attempt();
+            second.drainErrors();
+            try {
+                Attempt winner = null;
+                Attempt failed = null;
+                synchronized (lock) {
+                    // the first process to succeed, the one that has
+                    // failed first if both fail
+                    while (winner == null) {
+                        if (failed == null) {
+                            failed = first.finished ? first
+                                : second.finished ? second : null;
+                        }
+                        if (first.finished && first.succeeded()) {
+                            winner = first;
+                        } else if (second.finished && second.succeeded()) {
+                            winner = second;
+                        } else if (first.finished && second.finished) {
+                            winner = failed;
+                        } else {
+                            lock.wait();
+                        }
+                    }
+                }
+                final Attempt loser = winner == first ? second : first;
+                loser.kill();
+                task.log("the " + (winner == first ? "first" : "second")
+                         + " svn process has "
+                         + (winner.succeeded() ? "succeeded" : "failed")
+                         + " first", Project.MSG_VERBOSE);
+                if (winner.latency >= 0) {
+                    addSample(winner.latency);
+                }
+                return winner.replay(handler);
+            } finally {
+                second.kill();
+                second.deleteBuffer();
+            }
+        } catch (final InterruptedException e) {
+            throw new InterruptedIOException("interrupted while waiting for"
+                                             + " svn");
+        } finally {
+            first.kill();
+            first.deleteBuffer();
+        }
+    }
+
+    /**
+     * A single svn process.
+     */
+    private final class Attempt implements Runnable {
+        static final int NOT_YET = -2;
+
+        private final Process process;
+        private final long started = System.currentTimeMillis();
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+
+        /** result of the first read, guarded by lock */
+        private int firstRead = NOT_YET;
+        /** milliseconds until the first output, -1 if there was none */
+        private long latency = -1;
+        /** whether the process has finished, guarded by lock */
+        private boolean finished;
+        private int exitCode = Execute.INVALID;
+        private IOException failure;
+
+        /** holds the output, guarded by lock */
+        private File buffer;
+        /** whether the buffer is no longer needed, guarded by lock */
+        private boolean discarded;
+        private final ByteArrayOutputStream errors =
+            new ByteArrayOutputStream();
+        /** reads standard error while buffering, guarded by lock */
+        private Thread errorDrainer;
+
+        Attempt() throws IOException {
+            process = Execute.launch(task.getProject(), command, env, dir,
+                                     true);
+            final Thread t = new Thread(this, "svn output reader");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Reads the first chunk of output and - if a second process
+         * has been started by then - buffers the rest of it.
+         */
+        public void run() {
+            final InputStream in = process.getInputStream();
+            int n;
+            try {
+                n = in.read(chunk);
+            } catch (final IOException e) {
+                n = -1;
+                failure = e;
+            }
+            synchronized (lock) {
+                firstRead = n;
+                if (n > 0) {
+                    latency = System.currentTimeMillis() - started;
+                }
+                lock.notifyAll();
+                if (!hedged) {
+                    // the output is passed on by stream
+                    direct = true;
+                    return;
+                }
+                if (!discarded) {
+                    buffer = FILE_UTILS.createTempFile(task.getProject(),
+                                                       "svnhedge", ".out",
+                                                       null, true, true);
+                }
+            }
+            OutputStream out = null;
+            try {
+                if (buffer == null) {
+                    // lost before the first output has arrived
+                    return;
+                }
+                out = new BufferedOutputStream(new FileOutputStream(buffer));
+                if (n > 0) {
+                    out.write(chunk, 0, n);
+                }
+                if (n >= 0) {
+                    byte[] b = new byte[CHUNK_SIZE];
+                    while ((n = in.read(b)) != -1) {
+                        out.write(b, 0, n);
+                    }
+                }
+                out.close();
+                out = null;
+                exitCode = process.waitFor();
+                Thread drainer;
+                synchronized (lock) {
+                    while (errorDrainer == null) {
+                        lock.wait();
+                    }
+                    drainer = errorDrainer;
+                }
+                drainer.join();
+            } catch (final IOException e) {
+                failure = e;
+            } catch (final InterruptedException e) {
+                failure = new InterruptedIOException(e.getMessage());
+            } finally {
+                FileUtils.close(out);
+                FileUtils.close(in);
+                synchronized (lock) {
+                    finished = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Reads standard error into memory while the process runs.
+         */
+        void drainErrors() {
+            FileUtils.close(process.getOutputStream());
+            final Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        final InputStream in = process.getErrorStream();
+                        try {
+                            final byte[] b = new byte[CHUNK_SIZE];
+                            int n;
+                            while ((n = in.read(b)) != -1) {
+                                errors.write(b, 0, n);
+                            }
+                        } catch (final IOException e) {
+                            // killed
+                        } finally {
+                            FileUtils.close(in);
+                        }
+                    }
+                }, "svn error reader");
+            t.setDaemon(true);
+            t.start();
+            synchronized (lock) {
+                errorDrainer = t;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Passes the process' output on to the handler while it is
+         * running.
+         */
+        int stream(final ExecuteStreamHandler handler)
+            throws IOException, InterruptedException {
+            if (failure != null) {
+                throw failure;
+            }
+            final InputStream out =
+                new PrefixInputStream(chunk, Math.max(firstRead, 0),
+                                      process.getInputStream());
+            handler.setProcessInputStream(process.getOutputStream());
+            handler.setProcessOutputStream(out);
+            handler.setProcessErrorStream(process.getErrorStream());
+            handler.start();
+            try {
+                exitCode = process.waitFor();
+            } finally {
+                handler.stop();
+                FileUtils.close(out);
+                FileUtils.close(process.getErrorStream());
+                FileUtils.close(process.getOutputStream());
+            }
+            return exitCode;
+        }
+
+        /**
+         * Passes the buffered output of the finished process on to
+         * the handler.
+         */
+        int replay(final ExecuteStreamHandler handler)
+            throws IOException, InterruptedException {
+            if (failure != null) {
+                throw failure;
+            }
+            ReplayInputStream.replay(handler,
+                                     new BufferedInputStream(
+                                         new FileInputStream(buffer)),
+                                     new ByteArrayInputStream(
+                                         errors.toByteArray()));
+            return exitCode;
+        }
+
+        /**
+         * Whether the finished process has exited with 0 and its
+         * output has been read completely.
+         */
+        boolean succeeded() {
+            return exitCode == 0 && failure == null;
+        }
+
+        void kill() {
+            process.destroy();
+        }
+
+        void deleteBuffer() {
+            synchronized (lock) {
+                discarded = true;
+                if (buffer != null) {
+                    buffer.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns bytes that have already been read from a stream before
+     * the rest of the stream.
+     *
+     * <p>Unlike SequenceInputStream it reports the stream's available
+     * bytes once the prefix has been consumed, Ant's stream pumpers
+     * would stop reading otherwise.</p>
+     */
+    private static final class PrefixInputStream extends FilterInputStream {
+        private final byte[] prefix;
+        private final int length;
+        private int pos;
+
+        PrefixInputStream(final byte[] prefix, final int length,
+                          final InputStream in) {
+            super(in);
+            this.prefix = prefix;
+            this.length = length;
+        }
+
+        public int read() throws IOException {
+            return pos < length ? prefix[pos++] & 0xff : super.read();
+        }
+
+        public int read(final byte[] b, final int off, final int len)
+            throws IOException {
+            if (pos < length) {
+                final int n = Math.min(len, length - pos);
+                System.arraycopy(prefix, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            return super.read(b, off, len);
+        }
+
+        public int available() throws IOException {
+            return pos < length ? length - pos : super.available();
+        }
+
+        public long skip(final long n) throws IOException {
+            if (pos < length) {
+                final int skipped = (int) Math.min(n, length - pos);
+                pos += skipped;
+                return skipped;
+            }
+            return super.skip(n);
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
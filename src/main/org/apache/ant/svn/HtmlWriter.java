@@ -0,0 +1,402 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+
+/**
+ * Writes the HTML reports that src/etc/changelog.xsl and
+ * src/etc/diff.xsl create, without writing XML first.
+ *
+ * <p>The changelog is rendered one entry at a time while the entries
+ * arrive, the stylesheet's order - newest first - is the order svn
+ * log uses unless it has been asked for an ascending range.  The
+ * markup and indentation follow the stylesheets' output, characters
+ * outside of US-ASCII are written as character references.</p>
+ */
+final class HtmlWriter implements EntryWriter {
+
+    private static final String LS = System.getProperty("line.separator");
+
+    private static final String CHANGELOG_STYLE =
+        "          body, p {" + LS
+        + "            font-family: Verdana, Arial, Helvetica, sans-serif;"
+        + LS
+        + "            font-size: 80%;" + LS
+        + "            color: #000000;" + LS
+        + "            background-color: #ffffff;" + LS
+        + "          }" + LS
+        + "          tr, td {" + LS
+        + "            font-family: Verdana, Arial, Helvetica, sans-serif;"
+        + LS
+        + "            background: #eeeee0;" + LS
+        + "          }" + LS
+        + "          td {" + LS
+        + "            padding-left: 20px;" + LS
+        + "          }" + LS
+        + "      .dateAndAuthor {" + LS
+        + "            font-family: Verdana, Arial, Helvetica, sans-serif;"
+        + LS
+        + "            font-weight: bold;" + LS
+        + "            text-align: left;" + LS
+        + "            background: #a6caf0;" + LS
+        + "            padding-left: 3px;" + LS
+        + "      }" + LS
+        + "          a {" + LS
+        + "            color: #000000;" + LS
+        + "          }" + LS
+        + "          pre {" + LS
+        + "            font-weight: bold;" + LS
+        + "          }" + LS;
+
+    private static final String DIFF_STYLE =
+        "          body, p {" + LS
+        + "          font-family: verdana,arial,helvetica;" + LS
+        + "          font-size: 80%;" + LS
+        + "          color:#000000;" + LS
+        + "          }" + LS
+        + "\t  .dateAndAuthor {" + LS
+        + "          font-family: verdana,arial,helvetica;" + LS
+        + "          font-size: 80%;" + LS
+        + "          font-weight: bold;" + LS
+        + "          text-align:left;" + LS
+        + "          background:#a6caf0;" + LS
+        + "\t  }" + LS
+        + "          tr, td{" + LS
+        + "          font-family: verdana,arial,helvetica;" + LS
+        + "          font-size: 80%;" + LS
+        + "          background:#eeeee0;" + LS
+        + "          }\t  " + LS
+        + "\t  ";
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final String ANT_LINK =
+        "Designed for use with <a href=\"http://ant.apache.org/\">"
+        + "Apache Ant</a>.";
+
+    private final String title;
+    private final String repo;
+    /** whether an entry has been written */
+    private boolean hasEntries;
+
+    private final SimpleDateFormat outputDate =
+        new SimpleDateFormat("yyyy-MM-dd");
+    private final SimpleDateFormat outputTime = new SimpleDateFormat("HH:mm");
+
+    /**
+     * @param title the title of the report, may be null
+     * @param repo the URL the paths are appended to for links, may be
+     * null
+     */
+    HtmlWriter(final String title, final String repo) {
+        this.title = title;
+        this.repo = null == repo ? "" : repo;
+    }
+
+    /**
+     * Writes everything up to the start of the table holding the
+     * entries.
+     */
+    public void startChangeLog(final PrintWriter output) throws IOException {
+        output.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\""
+                     + " \"http://www.w3.org/TR/html401/strict.dtd\">" + LS);
+        output.write("<html>" + LS);
+        output.write("    <head>" + LS);
+        output.write("        <META http-equiv=\"Content-Type\""
+                     + " content=\"text/html; charset=US-ASCII\">" + LS);
+        output.write("        <title>");
+        writeText(output, title);
+        output.write("</title>" + LS);
+        output.write("        <style type=\"text/css\">" + LS);
+        output.write(CHANGELOG_STYLE);
+        output.write("        </style>" + LS);
+        output.write("    </head>" + LS);
+        output.write("    <body>" + LS);
+        output.write("        <h1>" + LS);
+        output.write("            <a name=\"top\">");
+        writeText(output, title);
+        output.write("</a>" + LS);
+        output.write("        </h1>" + LS);
+        output.write("        <p style=\"text-align: right\">" + LS);
+        output.write("            " + ANT_LINK + LS);
+        output.write("        </p>" + LS);
+        output.write("        <hr>" + LS);
+        output.write("        <table border=\"0\" width=\"100%\""
+                     + " cellspacing=\"1\">");
+        hasEntries = false;
+    }
+
+    /**
+     * Writes the two table rows of an entry.
+     */
+    public void printEntry(final PrintWriter output, final SvnEntry entry)
+        throws IOException {
+        if (!hasEntries) {
+            output.write(LS);
+            hasEntries = true;
+        }
+        output.write("            <tr>" + LS);
+        output.write("                <td class=\"dateAndAuthor\">");
+        if (null != entry.getDate()) {
+            output.write(outputDate.format(entry.getDate()));
+            output.write(' ');
+            output.write(outputTime.format(entry.getDate()));
+        } else {
+            output.write(' ');
+        }
+        output.write(' ');
+        writeText(output, entry.getAuthor());
+        output.write("</td>" + LS);
+        output.write("            </tr>" + LS);
+        output.write("            <tr>" + LS);
+        output.write("                <td>" + LS);
+        output.write("                    <pre>");
+        writeText(output, entry.getMessage());
+        output.write("</pre>" + LS);
+        final SvnEntry.Path[] paths = entry.getPaths();
+        if (paths.length == 0) {
+            output.write("                    <ul></ul>" + LS);
+        } else {
+            output.write("                    <ul>" + LS);
+            for (int i = 0; i < paths.length; i++) {
+                output.write("                        <li>" + LS);
+                output.write("                            <a href=\"");
+                writeURI(output, repo);
+                writeURI(output, paths[i].getName());
+                output.write("\">");
+                writeText(output, repo);
+                writeText(output, paths[i].getName());
+                output.write("</a>" + LS);
+                output.write("        (" + paths[i].getActionDescription()
+                             + ")" + LS);
+                output.write("    " + LS);
+                output.write("                        </li>" + LS);
+            }
+            output.write("                    </ul>" + LS);
+        }
+        output.write("                </td>" + LS);
+        output.write("            </tr>" + LS);
+    }
+
+    /**
+     * Closes the table and the document, flushes and closes the
+     * writer.
+     */
+    public void endChangeLog(final PrintWriter output) throws IOException {
+        if (hasEntries) {
+            output.write("        ");
+        }
+        output.write("</table>" + LS);
+        output.write("    </body>" + LS);
+        output.write("</html>" + LS);
+        output.flush();
+        output.close();
+    }
+
+    /**
+     * Writes the report of a diff.
+     *
+     * @param output writer to which to send output
+     * @param from the start revision or the first tag or branch
+     * @param to the end revision or the second tag or branch
+     * @param paths the changed paths
+     */
+    void printDiff(final Writer output, final String from, final String to,
+                   final SvnEntry.Path[] paths) throws IOException {
+        output.write("<HTML>" + LS);
+        output.write("    <HEAD>" + LS);
+        output.write("        <META http-equiv=\"Content-Type\""
+                     + " content=\"text/html; charset=UTF-8\">" + LS);
+        output.write("        <TITLE>");
+        writeText(output, title);
+        output.write("</TITLE>" + LS);
+        output.write("    </HEAD>" + LS);
+        output.write("    <BODY link=\"#000000\" alink=\"#000000\""
+                     + " vlink=\"#000000\" text=\"#000000\">" + LS);
+        output.write("        <style type=\"text/css\">" + LS);
+        output.write(DIFF_STYLE);
+        output.write("</style>" + LS);
+        output.write("        <h1>" + LS);
+        output.write("            <a name=\"top\">");
+        writeText(output, title);
+        output.write("</a>" + LS);
+        output.write("        </h1>" + LS);
+        output.write("                  diff between ");
+        writeText(output, from);
+        output.write(" and ");
+        writeText(output, to);
+        output.write(LS);
+        output.write("        <p align=\"right\">" + LS);
+        output.write("            " + ANT_LINK + LS);
+        output.write("        </p>" + LS);
+        output.write("        <hr size=\"2\">" + LS);
+        output.write("        <a name=\"TOP\"></a>" + LS);
+        output.write("        <table width=\"100%\">" + LS);
+        output.write("            <tr>" + LS);
+        output.write("                <td align=\"right\">"
+                     + "<a href=\"#New\">New Files</a> |" + LS);
+        output.write("\t\t\t\t<a href=\"#Modified\">Modified Files</a> |"
+                     + LS);
+        output.write("\t\t\t\t<a href=\"#Removed\">Removed Files</a></td>"
+                     + LS);
+        output.write("            </tr>" + LS);
+        output.write("        </table>" + LS);
+        output.write("        <TABLE BORDER=\"0\" WIDTH=\"100%\""
+                     + " CELLPADDING=\"3\" CELLSPACING=\"1\">" + LS);
+        printPaths(output, "New Files", "New", paths, SvnEntry.Path.ADDED);
+        printPaths(output, "Modified Files", "Modified", paths,
+                   SvnEntry.Path.MODIFIED);
+        printPaths(output, "Removed Files", "Removed", paths,
+                   SvnEntry.Path.DELETED);
+        output.write("        </TABLE>" + LS);
+        output.write("    </BODY>" + LS);
+        output.write("</HTML>" + LS);
+    }
+
+    /**
+     * Writes the section of the diff report for one kind of
+     * action.
+     */
+    private void printPaths(final Writer output, final String heading,
+                            final String anchor, final SvnEntry.Path[] paths,
+                            final int action) throws IOException {
+        final ArrayList<SvnEntry.Path> l = new ArrayList<SvnEntry.Path>();
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i].getAction() == action) {
+                l.add(paths[i]);
+            }
+        }
+        output.write("            <TR>" + LS);
+        output.write("                <TD colspan=\"2\""
+                     + " class=\"dateAndAuthor\"><a name=\"" + anchor + "\">"
+                     + heading + " - " + l.size() + " entries" + LS);
+        output.write("\t\t\t</a><a href=\"#TOP\">(back to top)</a></TD>"
+                     + LS);
+        output.write("            </TR>" + LS);
+        output.write("            <TR>" + LS);
+        output.write("                <TD width=\"20\">    </TD><TD>" + LS);
+        if (l.isEmpty()) {
+            output.write("                    <ul></ul>" + LS);
+        } else {
+            output.write("                    <ul>" + LS);
+            for (int i = 0; i < l.size(); i++) {
+                final SvnEntry.Path p = l.get(i);
+                output.write("                        <li>" + LS);
+                output.write("                            <a target=\"_new\""
+                             + " href=\"");
+                writeURI(output, repo);
+                output.write('/');
+                writeURI(output, p.getName());
+                output.write("\">");
+                writeText(output, p.getName());
+                output.write("</a>" + LS);
+                output.write("                        </li>" + LS);
+            }
+            output.write("                    </ul>" + LS);
+        }
+        output.write("                </TD>" + LS);
+        output.write("            </TR>" + LS);
+    }
+
+    /**
+     * Escapes markup characters and writes characters outside of
+     * US-ASCII as character references.
+     */
+    private static void writeText(final Writer output, final String s)
+        throws IOException {
+        if (null == s) {
+            return;
+        }
+        final int len = s.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            String replacement = null;
+            if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if (c == '&') {
+                replacement = "&amp;";
+            } else if (c > 0x7f) {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+                    output.write(s, start, i - start);
+                    output.write("&#" + codePoint + ";");
+                    start = ++i + 1;
+                    continue;
+                }
+                replacement = "&#" + codePoint + ";";
+            }
+            if (null != replacement) {
+                output.write(s, start, i - start);
+                output.write(replacement);
+                start = i + 1;
+            }
+        }
+        output.write(s, start, len - start);
+    }
+
+    /**
+     * Writes a URI attribute value the way XSLT's html output method
+     * does: quotes, control characters and characters outside of
+     * US-ASCII are %-escaped UTF-8 bytes, ampersands are escaped as
+     * entity.
+     */
+    private static void writeURI(final Writer output, final String s)
+        throws IOException {
+        if (null == s) {
+            return;
+        }
+        final int len = s.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c != '&' && c != '"' && c >= 0x20 && c <= 0x7f) {
+                continue;
+            }
+            output.write(s, start, i - start);
+            if (c == '&') {
+                output.write("&amp;");
+                start = i + 1;
+                continue;
+            }
+            int end = i + 1;
+            if (Character.isHighSurrogate(c) && end < len
+                && Character.isLowSurrogate(s.charAt(end))) {
+                end++;
+            }
+            final byte[] utf8 = s.substring(i, end).getBytes("UTF-8");
+            for (int j = 0; j < utf8.length; j++) {
+                output.write('%');
+                output.write(HEX[(utf8[j] >> 4) & 0xf]);
+                output.write(HEX[utf8[j] & 0xf]);
+            }
+            start = end;
+            i = end - 1;
+        }
+        output.write(s, start, len - start);
+    }
+}
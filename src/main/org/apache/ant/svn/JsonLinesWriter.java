@@ -0,0 +1,206 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a changelog or diff as JSON lines, one object per entry or
+ * changed path.
+ *
+ * <p>An entry has the same properties as the &lt;entry&gt; element
+ * of the XML changelog, the paths are an array of objects with a name
+ * and an action.  Each line can be parsed on its own, so the file can
+ * be consumed while it is written or split for parallel
+ * processing.</p>
+ */
+final class JsonLinesWriter implements EntryWriter {
+
+    private static final String LINE_SEPARATOR = "\n";
+
+    private static final char LS = 0x2028;
+    private static final char PS = 0x2029;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SimpleDateFormat outputDate =
+        new SimpleDateFormat("yyyy-MM-dd");
+    private final SimpleDateFormat outputTime = new SimpleDateFormat("HH:mm");
+
+    /**
+     * Does nothing, JSON lines have no header.
+     */
+    public void startChangeLog(final PrintWriter output) {
+    }
+
+    /**
+     * Writes an entry as a single line.
+     */
+    public void printEntry(final PrintWriter output, final SvnEntry entry)
+        throws IOException {
+        output.write("{\"date\":");
+        writeString(output, null == entry.getDate() ? null
+                    : outputDate.format(entry.getDate()));
+        output.write(",\"time\":");
+        writeString(output, null == entry.getDate() ? null
+                    : outputTime.format(entry.getDate()));
+        output.write(",\"author\":");
+        writeString(output, entry.getAuthor());
+        output.write(",\"revision\":");
+        writeNumber(output, entry.getRevision());
+        if (null != entry.getRepository()) {
+            output.write(",\"repository\":");
+            writeString(output, entry.getRepository());
+        }
+        output.write(",\"paths\":[");
+        final SvnEntry.Path[] paths = entry.getPaths();
+        for (int i = 0; i < paths.length; i++) {
+            if (i > 0) {
+                output.write(',');
+            }
+            writePath(output, paths[i]);
+        }
+        output.write("],\"message\":");
+        writeString(output, entry.getMessage());
+        output.write('}');
+        output.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Flushes and closes the writer.
+     */
+    public void endChangeLog(final PrintWriter output) {
+        output.flush();
+        output.close();
+    }
+
+    /**
+     * Writes a changed path of a diff as a single line.
+     *
+     * @param output writer to which to send output
+     * @param attributes properties of the diff written before the
+     * path's own ones, sorted by name, null values are skipped
+     * @param path the path
+     */
+    static void printPath(final Writer output,
+                          final Map<String, String> attributes,
+                          final SvnEntry.Path path) throws IOException {
+        output.write('{');
+        for (Iterator<Map.Entry<String, String>> i =
+                 new TreeMap<String, String>(attributes).entrySet().iterator();
+             i.hasNext(); ) {
+            final Map.Entry<String, String> e = i.next();
+            if (null != e.getValue()) {
+                writeString(output, e.getKey());
+                output.write(':');
+                writeString(output, e.getValue());
+                output.write(',');
+            }
+        }
+        output.write("\"name\":");
+        writeString(output, path.getName());
+        output.write(",\"action\":");
+        writeString(output, path.getActionDescription());
+        output.write('}');
+        output.write(LINE_SEPARATOR);
+    }
+
+    private static void writePath(final Writer output,
+                                  final SvnEntry.Path path)
+        throws IOException {
+        output.write("{\"name\":");
+        writeString(output, path.getName());
+        output.write(",\"action\":");
+        writeString(output, path.getActionDescription());
+        output.write('}');
+    }
+
+    /**
+     * Writes a revision as a number if it is one.
+     */
+    private static void writeNumber(final Writer output, final String s)
+        throws IOException {
+        if (null == s || s.length() == 0) {
+            writeString(output, s);
+            return;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                writeString(output, s);
+                return;
+            }
+        }
+        output.write(s);
+    }
+
+    /**
+     * Writes a JSON string, null if s is null.
+     */
+    static void writeString(final Writer output, final String s)
+        throws IOException {
+        if (null == s) {
+            output.write("null");
+            return;
+        }
+        output.write('"');
+        final int len = s.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            // line and paragraph separators are valid in JSON but
+            // not in JavaScript and break some line oriented tools
+            if (c >= 0x20 && c != '"' && c != '\\'
+                && c != LS && c != PS) {
+                continue;
+            }
+            output.write(s, start, i - start);
+            start = i + 1;
+            switch (c) {
+            case '"':
+                output.write("\\\"");
+                break;
+            case '\\':
+                output.write("\\\\");
+                break;
+            case '\n':
+                output.write("\\n");
+                break;
+            case '\r':
+                output.write("\\r");
+                break;
+            case '\t':
+                output.write("\\t");
+                break;
+            default:
+                output.write("\\u");
+                output.write(HEX[(c >> 12) & 0xf]);
+                output.write(HEX[(c >> 8) & 0xf]);
+                output.write(HEX[(c >> 4) & 0xf]);
+                output.write(HEX[c & 0xf]);
+            }
+        }
+        output.write(s, start, len - start);
+        output.write('"');
+    }
+}
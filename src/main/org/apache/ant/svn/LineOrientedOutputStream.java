@@ -18,15 +18,20 @@
 
 package org.apache.ant.svn;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 /**
  * Invokes {@link #processLine processLine} whenever a full line has
  * been written to this stream.
  *
- * <p>Tries to be smart about line separators.</p>
+ * <p>Tries to be smart about line separators: CR, LF and CR LF all
+ * end a line.</p>
+ *
+ * <p>Subclasses that only care about a few of the lines can override
+ * {@link #processLine(byte[], int, int) the byte oriented variant} of
+ * processLine and avoid decoding the others.</p>
  */
 public abstract class LineOrientedOutputStream extends OutputStream {
 
@@ -39,10 +44,46 @@ public abstract class LineOrientedOutputStream extends OutputStream {
     /** Linefeed */
     private static final int LF = 0x0a;
 
-    private ByteArrayOutputStream buffer
-        = new ByteArrayOutputStream(INTIAL_SIZE);
+    /** Used to decode lines. */
+    private final Charset charset;
+
+    /** Holds the part of the current line that has been written so far. */
+    private byte[] buffer = new byte[INTIAL_SIZE];
+    private int count = 0;
+    /** Whether the last byte written has been a CR. */
     private boolean skip = false;
 
+    /** Bytes written so far. */
+    private long bytes = 0;
+    /** Whether anything has been written. */
+    private boolean started = false;
+    /** Flight recorder event, null if it is not recorded. */
+    private Object event;
+
+    /**
+     * Creates a stream that decodes lines using the platform's
+     * default encoding.
+     */
+    protected LineOrientedOutputStream() {
+        this(Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a stream that decodes lines using the given encoding.
+     *
+     * @param charset the encoding of the lines
+     */
+    protected LineOrientedOutputStream(final Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * The encoding used to decode lines.
+     */
+    protected final Charset getCharset() {
+        return charset;
+    }
+
     /**
      * Write the data to the buffer and flush the buffer, if a line
      * separator is detected.
@@ -50,36 +91,31 @@ public abstract class LineOrientedOutputStream extends OutputStream {
      * @param cc data to log (byte).
      */
     public final void write(int cc) throws IOException {
+        if (!started) {
+            start();
+        }
+        bytes++;
         final byte c = (byte) cc;
-        if ((c == '\n') || (c == '\r')) {
-            if (!skip) {
-              processBuffer();
+        if (c == LF || c == CR) {
+            if (!(skip && c == LF)) {
+                processBuffer();
             }
         } else {
-          buffer.write(cc);
+            ensureCapacity(1);
+            buffer[count++] = c;
         }
-        skip = (c == '\r');
+        skip = (c == CR);
     }
 
     /**
-     * Flush this log stream
+     * Flush this log stream.
+     *
+     * <p>Does nothing, an incomplete line is only processed once the
+     * rest of it arrives or the stream gets closed.  PumpStreamHandler
+     * flushes after each chunk it reads, which would otherwise split
+     * lines at arbitrary positions.</p>
      */
     public final void flush() throws IOException {
-        if (buffer.size() > 0) {
-            processBuffer();
-        }
-    }
-
-    /**
-     * Converts the buffer to a string and sends it to
-     * <code>processLine</code>
-     */
-    private void processBuffer() throws IOException {
-        try {
-            processLine(buffer.toString());
-        } finally {
-            buffer.reset();
-        }
     }
 
     /**
@@ -89,16 +125,52 @@ public abstract class LineOrientedOutputStream extends OutputStream {
      */
     protected abstract void processLine(String line) throws IOException;
 
+    /**
+     * Processes a line given as the bytes written to this stream
+     * without the line separator.
+     *
+     * <p>Decodes the line and passes it to {@link
+     * #processLine(String)}.  Subclasses may override this method to
+     * inspect the bytes before - or instead of - decoding them.</p>
+     *
+     * <p>The array is only valid for the duration of the call, it may
+     * be this stream's buffer or the one passed to {@link
+     * #write(byte[], int, int) write}.</p>
+     *
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
+     */
+    protected void processLine(final byte[] buf, final int off,
+                               final int len) throws IOException {
+        processLine(new String(buf, off, len, charset));
+    }
+
     /**
      * Writes all remaining
      */
     public final void close() throws IOException {
-        if (buffer.size() > 0) {
+        if (count > 0) {
             processBuffer();
         }
+        if (event != null) {
+            SvnFlightRecorder.commit(event, new Object[] {
+                getClass().getName(), Long.valueOf(getEntryCount()),
+                Long.valueOf(bytes)});
+            event = null;
+        }
         super.close();
     }
 
+    /**
+     * The number of entries parsed so far, reported to the flight
+     * recorder once the stream gets closed.
+     */
+    protected long getEntryCount() {
+        return 0;
+    }
+
+
     /**
      * Write a block of characters to the output stream
      *
@@ -109,27 +181,110 @@ public abstract class LineOrientedOutputStream extends OutputStream {
      * @throws IOException if the data cannot be written into the stream.
      */
     public final void write(byte[] b, int off, int len) throws IOException {
-        // find the line breaks and pass other chars through in blocks
-        int offset = off;
-        int blockStartOffset = offset;
-        int remaining = len;
-        while (remaining > 0) {
-            while (remaining > 0 && b[offset] != LF && b[offset] != CR) {
-                offset++;
-                remaining--;
-            }
-            // either end of buffer or a line separator char
-            int blockLength = offset - blockStartOffset;
-            if (blockLength > 0) {
-                buffer.write(b, blockStartOffset, blockLength);
+        if (len <= 0) {
+            return;
+        }
+        if (!started) {
+            start();
+        }
+        bytes += len;
+        final int end = off + len;
+        int lineStart = off;
+        for (int i = off; i < end; i++) {
+            final byte c = b[i];
+            if (c == LF || c == CR) {
+                final boolean afterCR = i > off ? b[i - 1] == CR : skip;
+                if (!(afterCR && c == LF)) {
+                    if (count == 0) {
+                        // the whole line is inside of b, no need to copy
+                        processLine(b, lineStart, i - lineStart);
+                    } else {
+                        append(b, lineStart, i - lineStart);
+                        processBuffer();
+                    }
+                }
+                lineStart = i + 1;
             }
-            while (remaining > 0 && (b[offset] == LF || b[offset] == CR)) {
-                write(b[offset]);
-                offset++;
-                remaining--;
+        }
+        append(b, lineStart, end - lineStart);
+        skip = b[end - 1] == CR;
+    }
+
+    /**
+     * Whether a line starts with the given bytes.
+     *
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
+     * @param prefix the bytes to look for
+     */
+    protected static boolean startsWith(final byte[] buf, final int off,
+                                        final int len, final byte[] prefix) {
+        if (len < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[off + i] != prefix[i]) {
+                return false;
             }
-            blockStartOffset = offset;
         }
+        return true;
+    }
+
+    /**
+     * The bytes of a string that only consists of ASCII characters,
+     * for use with {@link #startsWith startsWith}.
+     *
+     * @param s the string
+     */
+    protected static byte[] ascii(final String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) s.charAt(i);
+        }
+        return b;
     }
 
+    /**
+     * Starts the flight recorder event when the first byte arrives.
+     */
+    private void start() {
+        started = true;
+        event = SvnFlightRecorder.begin(SvnFlightRecorder.PARSE);
+    }
+
+    /**
+     * Sends the buffered line to <code>processLine</code>.
+     */
+    private void processBuffer() throws IOException {
+        try {
+            processLine(buffer, 0, count);
+        } finally {
+            count = 0;
+        }
+    }
+
+    /**
+     * Adds bytes to the current line.
+     */
+    private void append(final byte[] b, final int off, final int len) {
+        if (len <= 0) {
+            return;
+        }
+        ensureCapacity(len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Grows the buffer if it cannot hold len more bytes.
+     */
+    private void ensureCapacity(final int len) {
+        if (count + len > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2,
+                                                 count + len)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
 }
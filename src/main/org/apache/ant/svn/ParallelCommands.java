@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
+import org.apache.tools.ant.types.Commandline;
+
+/**
+ * Runs the command lines of a task concurrently.
+ *
+ * <p>The output of each command is buffered and passed on to the
+ * task's output and error streams in the order of the command lines,
+ * as soon as all commands before it have completed.  If a command
+ * fails with failonerror set, the commands still running are killed,
+ * those not started yet are skipped and the failure is thrown once
+ * the output of the completed commands has been passed on.</p>
+ */
+final class ParallelCommands {
+    private final AbstractSvnTask task;
+    private final int threads;
+
+    /**
+     * @param task the task that runs the commands
+     * @param threads the number of commands to run at the same time
+     */
+    ParallelCommands(final AbstractSvnTask task, final int threads) {
+        this.task = task;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the commands and waits until they have completed.
+     *
+     * @param commandlines the commands
+     * @throws BuildException if failonerror is set and a command fails
+     */
+    void run(final Commandline[] commandlines) throws BuildException {
+        final Command[] commands = new Command[commandlines.length];
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(Math.min(threads,
+                                                  commands.length));
+        final CompletionService<Command> completed =
+            new ExecutorCompletionService<Command>(executor);
+        RuntimeException failure = null;
+        int flushed = 0;
+        try {
+            for (int i = 0; i < commands.length; i++) {
+                commands[i] = new Command(commandlines[i]);
+                completed.submit(commands[i]);
+            }
+            for (int i = 0; i < commands.length && failure == null; i++) {
+                final Command c = completed.take().get();
+                failure = c.failure;
+                while (flushed < commands.length && commands[flushed].done) {
+                    flush(commands[flushed++]);
+                }
+            }
+        } catch (final InterruptedException e) {
+            failure = new BuildException("interrupted while waiting for svn",
+                                         e, task.getLocation());
+        } catch (final ExecutionException e) {
+            failure = new BuildException(e.getCause(), task.getLocation());
+        } finally {
+            if (failure != null) {
+                // the remaining commands are going to be killed, only
+                // pass on complete output
+                for (int i = flushed; i < commands.length; i++) {
+                    if (commands[i] != null && commands[i].done) {
+                        flush(commands[i]);
+                    }
+                }
+            }
+            stop(executor);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void flush(final Command c) {
+        try {
+            c.out.writeTo(task.getOutputStream());
+            c.err.writeTo(task.getErrorStream());
+        } catch (final IOException e) {
+            throw new BuildException(e, task.getLocation());
+        }
+    }
+
+    /**
+     * Kills the running commands and waits until they are gone.
+     */
+    private static void stop(final ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // interrupted commands destroy their processes
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single command and its buffered output.
+     */
+    private final class Command implements Callable<Command> {
+        private final Commandline commandline;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        private RuntimeException failure;
+        /** the output is complete, set after failure */
+        private volatile boolean done;
+
+        private Command(final Commandline commandline) {
+            this.commandline = commandline;
+        }
+
+        public Command call() {
+            try {
+                task.runCommand(commandline,
+                                new PumpStreamHandler(out, err));
+            } catch (final RuntimeException e) {
+                failure = e;
+            } finally {
+                done = true;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A prefix tree of relative file names that knows which of them have
+ * been selected.
+ *
+ * <p>Used to replace the selected files with the directories
+ * containing them if most of a directory's files have been selected
+ * and to decide which of the paths reported for the directories
+ * belong to the original selection.</p>
+ *
+ * <p>Names may use '/' or the platform's separator.</p>
+ */
+final class PathTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a file.
+     *
+     * @param path the relative name of the file
+     * @param selected whether the file has been selected
+     */
+    void add(final String path, final boolean selected) {
+        Node n = root;
+        n.count(selected);
+        final String[] segments = split(path);
+        for (int i = 0; i < segments.length; i++) {
+            Node child = n.children.get(segments[i]);
+            if (null == child) {
+                child = new Node();
+                n.children.put(segments[i], child);
+            }
+            n = child;
+            n.count(selected);
+        }
+        n.file = true;
+    }
+
+    /**
+     * The smallest set of files and directories that covers all
+     * selected files if every directory with at least the given
+     * fraction of selected files is used as a whole.
+     *
+     * @param threshold the fraction of a directory's files that must
+     * be selected, 1 only uses directories of which all files are
+     * selected
+     * @return the relative names using the platform's separator, "."
+     * for the root
+     */
+    String[] getCoveringPaths(final double threshold) {
+        final ArrayList<String> l = new ArrayList<String>();
+        collect(root, null, threshold, l);
+        return l.toArray(new String[l.size()]);
+    }
+
+    /**
+     * Whether the path is a selected file.
+     *
+     * @param path the relative name, the empty String for the root
+     */
+    boolean isSelected(final String path) {
+        final Node n = find(path);
+        return null != n && n.file && n.selected > 0;
+    }
+
+    /**
+     * Whether the path is a selected file or a directory containing
+     * selected files.
+     *
+     * @param path the relative name, the empty String for the root
+     */
+    boolean containsSelected(final String path) {
+        final Node n = find(path);
+        return null != n && n.selected > 0;
+    }
+
+    private Node find(final String path) {
+        Node n = root;
+        final String[] segments = split(path);
+        for (int i = 0; null != n && i < segments.length; i++) {
+            n = n.children.get(segments[i]);
+        }
+        return n;
+    }
+
+    private static void collect(final Node n, final String path,
+                                final double threshold,
+                                final List<String> l) {
+        if (n.selected == 0) {
+            return;
+        }
+        if (n.file || n.selected >= threshold * n.total) {
+            l.add(null == path ? "." : path);
+            return;
+        }
+        for (Iterator<Map.Entry<String, Node>> i =
+                 n.children.entrySet().iterator(); i.hasNext(); ) {
+            final Map.Entry<String, Node> e = i.next();
+            collect(e.getValue(),
+                    null == path ? e.getKey()
+                    : path + File.separator + e.getKey(),
+                    threshold, l);
+        }
+    }
+
+    private static String[] split(final String path) {
+        final ArrayList<String> l = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/'
+                || path.charAt(i) == File.separatorChar) {
+                if (i > start) {
+                    l.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return l.toArray(new String[l.size()]);
+    }
+
+    private static final class Node {
+        private final TreeMap<String, Node> children =
+            new TreeMap<String, Node>();
+        /** number of selected files in this subtree */
+        private int selected;
+        /** number of files in this subtree */
+        private int total;
+        private boolean file;
+
+        void count(final boolean isSelected) {
+            total++;
+            if (isSelected) {
+                selected++;
+            }
+        }
+    }
+}
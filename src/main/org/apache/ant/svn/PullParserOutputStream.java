@@ -0,0 +1,292 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Hands everything written to this stream to a StAX pull parser
+ * running in a separate thread.
+ *
+ * <p>This allows XML output of the svn executable to be parsed
+ * incrementally while it is pumped by a PumpStreamHandler, just like
+ * {@link LineOrientedOutputStream} does for line oriented output.
+ * The parser thread is started when the first chunk of data
+ * arrives.</p>
+ *
+ * <p>{@link #close close} must be invoked once the svn process has
+ * finished, it waits for the parser to consume all data and
+ * propagates any parser errors.</p>
+ *
+ * <p>Writing is synchronized as the PumpStreamHandler flushes the
+ * stream from the thread stopping it while the pumping thread may
+ * still be writing.</p>
+ */
+abstract class PullParserOutputStream extends OutputStream {
+
+    /** Size of the chunks passed to the parser thread. */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** Number of chunks that may wait for the parser. */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /** Marks the end of the stream in the queue. */
+    private static final byte[] EOF = new byte[0];
+
+    private final BlockingQueue<byte[]> queue =
+        new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int count = 0;
+    private boolean closed = false;
+    private Thread parserThread;
+    private volatile Throwable failure;
+    /** bytes written so far */
+    private long bytes = 0;
+    /** flight recorder event, null if it is not recorded */
+    private Object event;
+
+    /**
+     * Write a single byte.
+     *
+     * @param b the byte to write
+     */
+    public final synchronized void write(int b) throws IOException {
+        bytes++;
+        buffer[count++] = (byte) b;
+        if (count == buffer.length) {
+            passChunk();
+        }
+    }
+
+    /**
+     * Write a block of bytes.
+     *
+     * @param b the array containing the data
+     * @param off the offset into the array where data starts
+     * @param len the length of block
+     */
+    public final synchronized void write(byte[] b, int off, int len)
+        throws IOException {
+        if (len > 0) {
+            bytes += len;
+        }
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == buffer.length) {
+                passChunk();
+            }
+        }
+    }
+
+    /**
+     * Passes all data written so far on to the parser.
+     */
+    public final synchronized void flush() throws IOException {
+        if (count > 0) {
+            passChunk();
+        }
+    }
+
+    /**
+     * Signals the end of the stream and waits for the parser to
+     * finish.
+     *
+     * @throws IOException if the parser failed
+     */
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        if (parserThread == null) {
+            // nothing has been written, there is nothing to parse
+            return;
+        }
+        put(EOF);
+        try {
+            parserThread.join();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while waiting for"
+                                             + " the parser");
+        }
+        if (event != null) {
+            SvnFlightRecorder.commit(event, new Object[] {
+                getClass().getName(), Long.valueOf(getEntryCount()),
+                Long.valueOf(bytes)});
+        }
+        if (failure != null) {
+            IOException ex = new IOException("Error in parsing: "
+                                             + failure.getMessage());
+            ex.initCause(failure);
+            throw ex;
+        }
+    }
+
+    /**
+     * Parses the stream's content.
+     *
+     * <p>Invoked in a separate thread, the reader is closed by the
+     * caller.</p>
+     *
+     * @param reader the parser reading everything written to this
+     * stream
+     */
+    protected abstract void parse(XMLStreamReader reader)
+        throws XMLStreamException;
+
+    /**
+     * The number of entries parsed so far, reported to the flight
+     * recorder once the stream gets closed.
+     */
+    protected long getEntryCount() {
+        return 0;
+    }
+
+    /**
+     * Creates the StAX factory used to parse the stream.
+     *
+     * <p>svn's output is neither supposed to contain a DTD nor
+     * external entities.</p>
+     */
+    protected XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                            Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    private void passChunk() throws IOException {
+        if (closed) {
+            throw new IOException("stream has already been closed");
+        }
+        if (parserThread == null) {
+            startParser();
+        }
+        byte[] chunk = buffer;
+        if (count < chunk.length) {
+            chunk = new byte[count];
+            System.arraycopy(buffer, 0, chunk, 0, count);
+        } else {
+            buffer = new byte[CHUNK_SIZE];
+        }
+        count = 0;
+        put(chunk);
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while passing data"
+                                             + " to the parser");
+        }
+    }
+
+    private void startParser() {
+        event = SvnFlightRecorder.begin(SvnFlightRecorder.PARSE);
+        parserThread = new Thread(new Runnable() {
+                public void run() {
+                    InputStream in = new ChunkInputStream();
+                    try {
+                        XMLStreamReader reader =
+                            createInputFactory().createXMLStreamReader(in);
+                        try {
+                            parse(reader);
+                        } finally {
+                            reader.close();
+                        }
+                    } catch (Throwable t) {
+                        failure = t;
+                    } finally {
+                        // don't block the pumping thread
+                        drain(in);
+                    }
+                }
+            }, getClass().getName());
+        parserThread.setDaemon(true);
+        parserThread.start();
+    }
+
+    private static void drain(InputStream in) {
+        try {
+            byte[] b = new byte[CHUNK_SIZE];
+            while (in.read(b, 0, b.length) != -1) {
+                // discard
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Reads the chunks passed in by the writing thread.
+     */
+    private class ChunkInputStream extends InputStream {
+        private byte[] current = null;
+        private int pos = 0;
+
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return current[pos++] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            while (current != EOF && (current == null
+                                      || pos == current.length)) {
+                try {
+                    current = queue.take();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                pos = 0;
+            }
+            return current != EOF;
+        }
+    }
+}
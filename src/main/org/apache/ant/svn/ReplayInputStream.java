@@ -0,0 +1,134 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Output of an svn process that has been recorded before, passed on
+ * to a stream handler as if the process was running.
+ *
+ * <p>Ant's stream pumpers only read once input is available, so the
+ * end of the stream is reported as being available - reading it never
+ * blocks for a file or byte array.</p>
+ */
+final class ReplayInputStream extends FilterInputStream {
+    private boolean eof;
+    private IOException failure;
+
+    ReplayInputStream(final InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Passes recorded output on to a handler and waits until the
+     * handler has consumed all of it.
+     *
+     * @param handler the handler
+     * @param out the recorded standard output
+     * @param err the recorded standard error
+     * @throws IOException if reading the recorded output failed
+     */
+    static void replay(final ExecuteStreamHandler handler,
+                       final InputStream out, final InputStream err)
+        throws IOException, InterruptedException {
+        final ReplayInputStream o = new ReplayInputStream(out);
+        final ReplayInputStream e = new ReplayInputStream(err);
+        try {
+            handler.setProcessInputStream(new ByteArrayOutputStream());
+            handler.setProcessOutputStream(o);
+            handler.setProcessErrorStream(e);
+            handler.start();
+            // stopping the handler early would truncate the output
+            o.await();
+            e.await();
+        } finally {
+            handler.stop();
+            FileUtils.close(o);
+            FileUtils.close(e);
+        }
+        o.check();
+        e.check();
+    }
+
+    public synchronized int available() throws IOException {
+        final int n = eof ? 0 : super.available();
+        return n > 0 || eof ? n : 1;
+    }
+
+    public int read() throws IOException {
+        try {
+            return eof(super.read());
+        } catch (final IOException e) {
+            throw failed(e);
+        }
+    }
+
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+        try {
+            return eof(super.read(b, off, len));
+        } catch (final IOException e) {
+            throw failed(e);
+        }
+    }
+
+    public void close() throws IOException {
+        eof(-1);
+        super.close();
+    }
+
+    /**
+     * Waits until the end of the stream has been reached.
+     */
+    private synchronized void await() throws InterruptedException {
+        while (!eof) {
+            wait();
+        }
+    }
+
+    /**
+     * Throws the exception reading has failed with - the stream
+     * pumpers swallow them.
+     */
+    private synchronized void check() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private synchronized int eof(final int result) {
+        if (result == -1) {
+            eof = true;
+            notifyAll();
+        }
+        return result;
+    }
+
+    private synchronized IOException failed(final IOException e) {
+        failure = e;
+        eof(-1);
+        return e;
+    }
+}
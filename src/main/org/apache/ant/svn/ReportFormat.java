@@ -0,0 +1,108 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * The formats changelog, revisiondiff and tagdiff can write their
+ * reports in.
+ */
+final class ReportFormat {
+
+    /** The XML the XSLT stylesheets consume, the default. */
+    static final String XML = "xml";
+
+    /** One JSON object per line. */
+    static final String JSONL = "jsonl";
+
+    /** Comma separated values with a header line. */
+    static final String CSV = "csv";
+
+    /** The HTML report the stylesheets in src/etc create. */
+    static final String HTML = "html";
+
+    private ReportFormat() {
+    }
+
+    /**
+     * Validates the format attribute of a task.
+     *
+     * @param format the format
+     * @exception BuildException if the format is not supported
+     */
+    static void validate(final String format) throws BuildException {
+        if (!XML.equals(format) && !JSONL.equals(format)
+            && !CSV.equals(format) && !HTML.equals(format)) {
+            throw new BuildException("format must be one of " + XML + ", "
+                                     + JSONL + ", " + CSV + " or " + HTML
+                                     + ".");
+        }
+    }
+
+    /**
+     * Creates the writer for a changelog in the given format.
+     *
+     * @param format a valid format
+     * @param title the title of an HTML report, may be null
+     * @param repoURL the URL the paths are appended to for links in
+     * an HTML report, may be null
+     */
+    static EntryWriter createEntryWriter(final String format,
+                                         final String title,
+                                         final String repoURL) {
+        if (HTML.equals(format)) {
+            return new HtmlWriter(title, repoURL);
+        } else if (JSONL.equals(format)) {
+            return new JsonLinesWriter();
+        } else if (CSV.equals(format)) {
+            return new CsvWriter();
+        }
+        return new SvnChangeLogWriter();
+    }
+
+    /**
+     * Writes the paths of a diff as JSON lines or CSV records.
+     *
+     * @param output writer to which to send output
+     * @param format JSONL or CSV
+     * @param attributes the attributes of the diff that the XML
+     * format writes as attributes of the root element, they are
+     * repeated in each record
+     * @param paths the changed paths
+     */
+    static void writePaths(final PrintWriter output, final String format,
+                           final Map<String, String> attributes,
+                           final SvnEntry.Path[] paths)
+        throws IOException {
+        if (JSONL.equals(format)) {
+            for (int i = 0; i < paths.length; i++) {
+                JsonLinesWriter.printPath(output, attributes, paths[i]);
+            }
+        } else {
+            CsvWriter.printPathHeader(output, attributes);
+            for (int i = 0; i < paths.length; i++) {
+                CsvWriter.printPath(output, attributes, paths[i]);
+            }
+        }
+    }
+}
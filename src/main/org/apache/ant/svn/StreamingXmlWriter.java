@@ -0,0 +1,282 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.tools.ant.util.DOMElementWriter;
+
+/**
+ * Writes XML elements straight to a Writer without building a DOM
+ * tree first.
+ *
+ * <p>The output is the same as the one {@link DOMElementWriter}
+ * creates for the equivalent tree: attributes are sorted by name,
+ * text is escaped the same way, characters that are illegal in XML
+ * are dropped, CDATA sections containing <code>]]&gt;</code> are
+ * split and each element that has child elements starts a new
+ * line.</p>
+ *
+ * <p>Unlike DOMElementWriter a null text or CDATA content is written
+ * as an empty one.</p>
+ */
+final class StreamingXmlWriter {
+
+    /** Default indentation. */
+    static final String INDENT = "\t";
+
+    private final Writer out;
+    private final String indentWith;
+    private final String lineSeparator = System.getProperty("line.separator");
+
+    /**
+     * Creates a writer that indents using tabs.
+     *
+     * @param out where to write to
+     */
+    StreamingXmlWriter(final Writer out) {
+        this(out, INDENT);
+    }
+
+    /**
+     * @param out where to write to
+     * @param indentWith string used for one level of indentation
+     */
+    StreamingXmlWriter(final Writer out, final String indentWith) {
+        this.out = out;
+        this.indentWith = indentWith;
+    }
+
+    /**
+     * Writes the XML declaration for UTF-8 followed by a line break.
+     */
+    void writeDeclaration() throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.write(lineSeparator);
+    }
+
+    /**
+     * Writes the start tag of an element that is going to have child
+     * elements followed by a line break.
+     *
+     * @param indent the indentation level
+     * @param name the element's name
+     */
+    void startElement(final int indent, final String name)
+        throws IOException {
+        startElement(indent, name, null);
+    }
+
+    /**
+     * Writes the start tag of an element that is going to have child
+     * elements followed by a line break.
+     *
+     * @param indent the indentation level
+     * @param name the element's name
+     * @param attributes maps attribute names to values, null values
+     * are skipped, may be null
+     */
+    void startElement(final int indent, final String name,
+                      final Map<String, String> attributes)
+        throws IOException {
+        indent(indent);
+        out.write('<');
+        out.write(name);
+        if (attributes != null) {
+            for (Iterator<Map.Entry<String, String>> i =
+                     new TreeMap<String, String>(attributes)
+                     .entrySet().iterator();
+                 i.hasNext(); ) {
+                Map.Entry<String, String> e = i.next();
+                if (e.getValue() != null) {
+                    out.write(' ');
+                    out.write(e.getKey());
+                    out.write("=\"");
+                    writeEncoded(e.getValue(), true);
+                    out.write('"');
+                }
+            }
+        }
+        out.write('>');
+        out.write(lineSeparator);
+    }
+
+    /**
+     * Writes the end tag of an element started with startElement.
+     *
+     * @param indent the indentation level
+     * @param name the element's name
+     * @param hasChildren whether any child elements have been
+     * written, the end tag is not indented otherwise
+     */
+    void endElement(final int indent, final String name,
+                    final boolean hasChildren) throws IOException {
+        if (hasChildren) {
+            indent(indent);
+        }
+        out.write("</");
+        out.write(name);
+        out.write('>');
+        out.write(lineSeparator);
+    }
+
+    /**
+     * Writes an element with text content on a line of its own.
+     *
+     * @param indent the indentation level
+     * @param name the element's name
+     * @param text the content
+     */
+    void textElement(final int indent, final String name, final String text)
+        throws IOException {
+        indent(indent);
+        out.write('<');
+        out.write(name);
+        out.write('>');
+        if (text != null) {
+            writeEncoded(text, false);
+        }
+        out.write("</");
+        out.write(name);
+        out.write('>');
+        out.write(lineSeparator);
+    }
+
+    /**
+     * Writes an element with a CDATA section as content on a line of
+     * its own.
+     *
+     * @param indent the indentation level
+     * @param name the element's name
+     * @param data the content
+     */
+    void cdataElement(final int indent, final String name, final String data)
+        throws IOException {
+        indent(indent);
+        out.write('<');
+        out.write(name);
+        out.write("><![CDATA[");
+        if (data != null) {
+            writeCData(data);
+        }
+        out.write("]]></");
+        out.write(name);
+        out.write('>');
+        out.write(lineSeparator);
+    }
+
+    private void indent(final int indent) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            out.write(indentWith);
+        }
+    }
+
+    /**
+     * Escapes markup characters, attribute values get whitespace
+     * encoded as well.
+     */
+    private void writeEncoded(final String value, final boolean attribute)
+        throws IOException {
+        final int len = value.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            String replacement = null;
+            switch (c) {
+            case '<':
+                replacement = "&lt;";
+                break;
+            case '>':
+                replacement = "&gt;";
+                break;
+            case '\'':
+                replacement = "&apos;";
+                break;
+            case '"':
+                replacement = "&quot;";
+                break;
+            case '&':
+                replacement = "&amp;";
+                break;
+            case '\t':
+                replacement = attribute ? "&#x9;" : null;
+                break;
+            case '\n':
+                replacement = attribute ? "&#xa;" : null;
+                break;
+            case '\r':
+                replacement = attribute ? "&#xd;" : null;
+                break;
+            default:
+                if (!isLegalXmlCharacter(c)) {
+                    replacement = "";
+                }
+                break;
+            }
+            if (replacement != null) {
+                out.write(value, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, len - start);
+    }
+
+    /**
+     * Writes the content of a CDATA section, drops illegal characters
+     * and splits the section wherever the content contains its end
+     * marker.
+     */
+    private void writeCData(final String value) throws IOException {
+        final int len = value.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            if (c == ']' && value.startsWith("]]>", i)) {
+                out.write(value, start, i - start);
+                out.write("]]]]><![CDATA[>");
+                i += 2;
+                start = i + 1;
+            } else if (!isLegalXmlCharacter(c)) {
+                out.write(value, start, i - start);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, len - start);
+    }
+
+    /**
+     * Same test as DOMElementWriter's.
+     */
+    private static boolean isLegalXmlCharacter(final char c) {
+        if (c == 0x9 || c == 0xA || c == 0xD) {
+            return true;
+        } else if (c < 0x20) {
+            return false;
+        } else if (c <= 0xD7FF) {
+            return true;
+        } else if (c < 0xE000) {
+            return false;
+        }
+        return c <= 0xFFFD;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.nio.charset.Charset;
+
+/**
+ * A bounded pool of Strings that are looked up by their encoded
+ * bytes.
+ *
+ * <p>svn log repeats the same authors and - to a lesser degree - the
+ * same paths over and over again.  Looking them up in this pool means
+ * a String is only created the first time a given sequence of bytes is
+ * seen and all entries share a single instance.</p>
+ *
+ * <p>Once the pool holds its maximum number of Strings it is emptied
+ * so memory stays bounded even for histories with millions of
+ * distinct paths.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+final class StringPool {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Charset charset;
+    private final int maxSize;
+    private Entry[] table = new Entry[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param charset encoding of the bytes
+     * @param maxSize maximum number of Strings held by the pool
+     */
+    StringPool(final Charset charset, final int maxSize) {
+        this.charset = charset;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The String for the given bytes.
+     *
+     * @param buf holds the bytes
+     * @param off the offset into the array where the bytes start
+     * @param len the number of bytes
+     * @return the pooled String
+     */
+    String get(final byte[] buf, final int off, final int len) {
+        int hash = 1;
+        for (int i = off; i < off + len; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        for (Entry e = table[hash & (table.length - 1)]; e != null;
+             e = e.next) {
+            if (e.hash == hash && e.matches(buf, off, len)) {
+                return e.value;
+            }
+        }
+        String value = new String(buf, off, len, charset);
+        if (size >= maxSize) {
+            table = new Entry[INITIAL_CAPACITY];
+            size = 0;
+        } else if (size >= table.length * 3 / 4) {
+            rehash();
+        }
+        byte[] bytes = new byte[len];
+        System.arraycopy(buf, off, bytes, 0, len);
+        int index = hash & (table.length - 1);
+        table[index] = new Entry(hash, bytes, value, table[index]);
+        size++;
+        return value;
+    }
+
+    /**
+     * Number of Strings in the pool.
+     */
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        Entry[] newTable = new Entry[table.length * 2];
+        for (int i = 0; i < table.length; i++) {
+            Entry e = table[i];
+            while (e != null) {
+                Entry next = e.next;
+                int index = e.hash & (newTable.length - 1);
+                e.next = newTable[index];
+                newTable[index] = e;
+                e = next;
+            }
+        }
+        table = newTable;
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final String value;
+        private Entry next;
+
+        Entry(final int hash, final byte[] bytes, final String value,
+              final Entry next) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+            this.next = next;
+        }
+
+        boolean matches(final byte[] buf, final int off, final int len) {
+            if (bytes.length != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (bytes[i] != buf[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Persistent store of the svn log entries of a single path inside a
+ * repository.
+ *
+ * <p>Revisions are immutable, so once svn log has been run for a
+ * range of revisions its result can be reused.  The cache knows the
+ * contiguous range of revisions it covers and holds the entries of
+ * all revisions inside that range that svn log has reported.  Entries
+ * are stored before any user name mapping has been applied.</p>
+ *
+ * <p>Cache files live in a sub-directory named after the repository's
+ * UUID, the file name is derived from the path's URL which is stored
+ * inside of the file as well.</p>
+ */
+final class SvnChangeLogCache {
+
+    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
+
+    /** identifies cache files */
+    private static final int MAGIC = 0x53564c43;
+    /** version of the file format */
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".log";
+
+    private final File file;
+    private final String url;
+
+    /** entries by revision number */
+    private final TreeMap<Integer, SvnEntry> entries =
+        new TreeMap<Integer, SvnEntry>();
+    /** first revision covered by the cache, -1 if empty */
+    private int low = -1;
+    /** last revision covered by the cache, -1 if empty */
+    private int high = -1;
+
+    /**
+     * Creates the cache for a path.
+     *
+     * @param dir the cache directory
+     * @param uuid the repository's UUID
+     * @param url the URL of the path
+     */
+    SvnChangeLogCache(final File dir, final String uuid, final String url) {
+        this.file = new File(new File(dir, uuid),
+                             Integer.toHexString(url.hashCode()) + SUFFIX);
+        this.url = url;
+    }
+
+    /**
+     * Loads the cache file if it exists.
+     *
+     * <p>A cache file that belongs to a different URL (hash
+     * collision) or uses an unknown format is ignored.</p>
+     *
+     * @return whether the cache file has been read
+     */
+    boolean load() throws IOException {
+        entries.clear();
+        low = high = -1;
+        if (!file.isFile()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                                         new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || !url.equals(in.readUTF())) {
+                return false;
+            }
+            int l = in.readInt();
+            int h = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                SvnEntry e = readEntry(in);
+                entries.put(Integer.valueOf(e.getRevision()), e);
+            }
+            low = l;
+            high = h;
+            return true;
+        } finally {
+            FileUtils.close(in);
+        }
+    }
+
+    /**
+     * Writes the cache file, replaces the old one only once the new
+     * one has been written completely.
+     */
+    void save() throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir);
+        }
+        // created right away so concurrent builds get distinct files
+        File tmp = FILE_UTILS.createTempFile(null, "svnlog", ".tmp", dir,
+                                             false, true);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                                           new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(url);
+            out.writeInt(low);
+            out.writeInt(high);
+            out.writeInt(entries.size());
+            for (Iterator<SvnEntry> i = entries.values().iterator();
+                 i.hasNext(); ) {
+                writeEntry(out, i.next());
+            }
+            out.close();
+            out = null;
+            FILE_UTILS.rename(tmp, file);
+        } finally {
+            FileUtils.close(out);
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Whether the cache holds any range at all.
+     */
+    boolean isEmpty() {
+        return low < 0;
+    }
+
+    /**
+     * First revision covered by the cache.
+     */
+    int getLow() {
+        return low;
+    }
+
+    /**
+     * Last revision covered by the cache - the high-water mark.
+     */
+    int getHigh() {
+        return high;
+    }
+
+    /**
+     * Whether the given range of revisions can be added without
+     * leaving a gap.
+     */
+    boolean isContiguous(final int from, final int to) {
+        return !isEmpty() && from <= high + 1 && to >= low - 1;
+    }
+
+    /**
+     * Adds the result of svn log for the given range.
+     *
+     * <p>If the range isn't contiguous with the range already
+     * covered the old content is discarded.</p>
+     *
+     * @param from first revision of the range
+     * @param to last revision of the range
+     * @param newEntries svn log's entries for the range
+     */
+    void add(final int from, final int to, final SvnEntry[] newEntries) {
+        if (!isContiguous(from, to)) {
+            entries.clear();
+            low = from;
+            high = to;
+        } else {
+            low = Math.min(low, from);
+            high = Math.max(high, to);
+        }
+        for (int i = 0; i < newEntries.length; i++) {
+            entries.put(Integer.valueOf(newEntries[i].getRevision()),
+                        newEntries[i]);
+        }
+    }
+
+    /**
+     * The cached entries in a given range.
+     *
+     * @param from first revision of the range
+     * @param to last revision of the range
+     * @param ascending order in which to return the entries
+     * @return the entries, they are copies of the cached ones and
+     * may be modified freely
+     */
+    SvnEntry[] getEntries(final int from, final int to,
+                          final boolean ascending) {
+        ArrayList<SvnEntry> l = new ArrayList<SvnEntry>();
+        for (Iterator<SvnEntry> i = entries.subMap(Integer.valueOf(from),
+                                                   Integer.valueOf(to + 1))
+                 .values().iterator(); i.hasNext(); ) {
+            SvnEntry e = i.next();
+            l.add(new SvnEntry(e.getDate(), e.getRevision(), e.getAuthor(),
+                               e.getMessage(),
+                               Arrays.asList(e.getPaths())));
+        }
+        if (!ascending) {
+            Collections.reverse(l);
+        }
+        return l.toArray(new SvnEntry[l.size()]);
+    }
+
+    private static SvnEntry readEntry(final DataInputStream in)
+        throws IOException {
+        String revision = in.readUTF();
+        Date date = in.readBoolean() ? new Date(in.readLong()) : null;
+        String author = readString(in);
+        String message = readString(in);
+        int count = in.readInt();
+        ArrayList<SvnEntry.Path> paths = new ArrayList<SvnEntry.Path>(count);
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            paths.add(new SvnEntry.Path(name, (int) in.readByte()));
+        }
+        return new SvnEntry(date, revision, author, message, paths);
+    }
+
+    private static void writeEntry(final DataOutputStream out,
+                                   final SvnEntry e) throws IOException {
+        out.writeUTF(e.getRevision());
+        out.writeBoolean(e.getDate() != null);
+        if (e.getDate() != null) {
+            out.writeLong(e.getDate().getTime());
+        }
+        writeString(out, e.getAuthor());
+        writeString(out, e.getMessage());
+        SvnEntry.Path[] paths = e.getPaths();
+        out.writeInt(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            writeString(out, paths[i].getName());
+            out.writeByte(paths[i].getAction());
+        }
+    }
+
+    /**
+     * Writes a String that may be null and exceed writeUTF's 64k
+     * limit.
+     */
+    private static void writeString(final DataOutputStream out,
+                                     final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] b = s.getBytes("UTF-8");
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String readString(final DataInputStream in)
+        throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, "UTF-8");
+    }
+}
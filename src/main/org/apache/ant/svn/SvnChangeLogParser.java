@@ -17,43 +17,126 @@
  */
 package org.apache.ant.svn;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 
 /**
  * A class used to parse the output of the svn log command.
  *
+ * <p>Lines are inspected as bytes, only the parts that end up in an
+ * entry get decoded.  Message lines are decoded into a single buffer
+ * that is reused for all revisions, authors and paths are taken from
+ * a bounded pool so repeated values share a single String.  This
+ * keeps the work per revision linear in the size of its log output
+ * and the garbage created per revision close to the size of the
+ * entry itself.</p>
  */
-class SvnChangeLogParser extends LineOrientedOutputStream {
+class SvnChangeLogParser extends LineOrientedOutputStream
+    implements LogParser {
 
     private final static int GET_ENTRY_LINE = 0;
     private final static int GET_REVISION_LINE = 1;
     private final static int GET_PATHS = 2;
     private final static int GET_MESSAGE = 3;
 
-    private String message = "";
+    /** Maximum number of authors and paths held by the pool. */
+    private static final int MAX_POOLED_STRINGS = 16384;
+
+    /** Line separating the revisions. */
+    private static final byte[] SEPARATOR =
+        ascii("------------------------------------------------------------------------");
+    private static final byte[] CHANGED_PATHS = ascii("Changed paths:");
+    private static final byte[] LINE = ascii("line");
+    private static final byte[] LINES = ascii("lines");
+    private static final byte[] BAR = ascii(" |");
+
+    private final StringBuffer message = new StringBuffer();
     private Date date = null;
     private String author = null;
     private String revision = null;
-    private ArrayList paths = new ArrayList();
+    private ArrayList<SvnEntry.Path> paths =
+        new ArrayList<SvnEntry.Path>();
 
     /** input format for dates read in from cvs log */
     private static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
-    private static final SimpleDateFormat INPUT_DATE
-        = new SimpleDateFormat(PATTERN);
+    /** SimpleDateFormat isn't thread-safe, each parser has its own */
+    private final SimpleDateFormat inputDate = new SimpleDateFormat(PATTERN);
+
+    private final String lineSeparator = System.getProperty("line.separator");
+    private final StringPool pool =
+        new StringPool(getCharset(), MAX_POOLED_STRINGS);
+    private final CharsetDecoder decoder = getCharset().newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(132);
+    private final Calendar calendar = Calendar.getInstance();
 
-    private final ArrayList entries = new ArrayList();
+    private final ArrayList<SvnEntry> entries = new ArrayList<SvnEntry>();
+    private final SvnEntryListener listener;
+    private final SvnEntryFilter filter;
+    /** number of revisions parsed */
+    private long revisions = 0;
     private int status = GET_ENTRY_LINE;
+    /** whether the current entry has already been rejected */
+    private boolean skip = false;
+
+    /**
+     * Creates a parser that collects all entries.
+     */
+    SvnChangeLogParser() {
+        this(null);
+    }
+
+    /**
+     * Creates a parser that passes each entry to a listener as soon
+     * as it has been parsed instead of collecting them.
+     *
+     * @param listener receives the entries, collect them if null
+     */
+    SvnChangeLogParser(final SvnEntryListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * Creates a parser that only creates the entries accepted by a
+     * filter.
+     *
+     * <p>Once the author of a rejected entry is known the rest of
+     * the entry is skipped without decoding it.</p>
+     *
+     * @param listener receives the entries, collect them if null
+     * @param filter selects the entries, accept all if null
+     */
+    SvnChangeLogParser(final SvnEntryListener listener,
+                       final SvnEntryFilter filter) {
+        this.listener = listener;
+        this.filter = filter;
+    }
 
     /**
      * Get a list of rcs entries as an array.
      *
+     * <p>Always empty if the entries have been passed to a
+     * listener.</p>
+     *
      * @return a list of rcs entries as an array
      */
     public SvnEntry[] getEntrySetAsArray() {
-        return (SvnEntry[]) entries.toArray(new SvnEntry[entries.size()]);
+        return entries.toArray(new SvnEntry[entries.size()]);
+    }
+
+    /**
+     * The number of revisions parsed so far.
+     */
+    protected long getEntryCount() {
+        return revisions;
     }
 
     /**
@@ -62,23 +145,37 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
      * @param line the line to process
      */
     public void processLine(final String line) {
+        final byte[] b = line.getBytes(getCharset());
+        processLine(b, 0, b.length);
+    }
+
+    /**
+     * Receive notification about the process writing
+     * to standard output.
+     *
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
+     */
+    protected void processLine(final byte[] buf, final int off,
+                               final int len) {
         switch(status) {
             case GET_ENTRY_LINE:
                 // make sure attributes are reset when
                 // working on a 'new' file.
                 reset();
-                processEntryStart(line);
+                processEntryStart(buf, off, len);
                 break;
             case GET_REVISION_LINE:
-                processRevision(line);
+                processRevision(buf, off, len);
                 break;
 
             case GET_MESSAGE:
-                processMessage(line);
+                processMessage(buf, off, len);
                 break;
 
             case GET_PATHS:
-                processPath(line);
+                processPath(buf, off, len);
                 break;
 
             default:
@@ -90,30 +187,36 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
     /**
      * Process a line while in "GET_MESSAGE" state.
      *
-     * @param line the line
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
      */
-    private void processMessage(final String line) {
-        final String lineSeparator = System.getProperty("line.separator");
-        if (line.equals("------------------------------------------------------------------------")) {
+    private void processMessage(final byte[] buf, final int off,
+                                final int len) {
+        if (isSeparator(buf, off, len)) {
             //We have ended changelog for that particular revision
             //so we can save it
-            final int end
-                = message.length() - lineSeparator.length();
-            message = message.substring(0, end);
+            if (message.length() >= lineSeparator.length()) {
+                message.setLength(message.length() - lineSeparator.length());
+            }
             saveEntry();
             status = GET_REVISION_LINE;
-        } else {
-            message += line + lineSeparator;
+        } else if (!skip) {
+            appendToMessage(buf, off, len);
+            message.append(lineSeparator);
         }
     }
 
     /**
      * Process a line while in "GET_ENTRY_LINE" state.
      *
-     * @param line the line to process
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
      */
-    private void processEntryStart(final String line) {
-        if (line.equals("------------------------------------------------------------------------")) {
+    private void processEntryStart(final byte[] buf, final int off,
+                                   final int len) {
+        if (isSeparator(buf, off, len)) {
             status = GET_REVISION_LINE;
         }
     }
@@ -121,18 +224,28 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
     /**
      * Process a line while in "REVISION" state.
      *
-     * @param line the line to process
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
      */
-    private void processRevision(final String line) {
-        int index = line.indexOf(" |");
-        if (line.startsWith("r") 
-            && (line.endsWith("lines") || line.endsWith("line"))
+    private void processRevision(final byte[] buf, final int off,
+                                 final int len) {
+        int index = indexOf(buf, off, len, BAR, 0);
+        if (len > 0 && buf[off] == 'r'
+            && (endsWith(buf, off, len, LINES)
+                || endsWith(buf, off, len, LINE))
             && index > -1) {
-            revision = line.substring(1, index);
-            int end = line.indexOf(" |", index + 1);
-            author = line.substring(index + 3, end);
-            String d = line.substring(end + 3, end + 3 + PATTERN.length());
-            date = parseDate(d);
+            int end = indexOf(buf, off, len, BAR, index + 1);
+            if (end < index + 3) {
+                return;
+            }
+            revision = new String(buf, off + 1, index - 1, getCharset());
+            author = pool.get(buf, off + index + 3, end - index - 3);
+            skip = null != filter && !filter.acceptsAuthor(author);
+            date = null;
+            if (end + 3 + PATTERN.length() <= len) {
+                date = parseDate(buf, off + end + 3);
+            }
             status = GET_PATHS;
         }
     }
@@ -140,15 +253,19 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
     /**
      * Process a line while in "GET_PATHS" state.
      *
-     * @param line the line to process
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
      */
-    private void processPath(final String line) {
-        if (line.startsWith("Changed paths:")) {
+    private void processPath(final byte[] buf, final int off,
+                             final int len) {
+        if (startsWith(buf, off, len, CHANGED_PATHS)) {
             // ignore
-        } else if (line.equals("")) {
+        } else if (len == 0) {
             status = GET_MESSAGE;
-        } else if (line.length() > 5) {
-            paths.add(new SvnEntry.Path(line.substring(5), line.charAt(3)));
+        } else if (len > 5 && !skip) {
+            paths.add(new SvnEntry.Path(pool.get(buf, off + 5, len - 5),
+                                        (char) (buf[off + 3] & 0xff)));
         }
     }
 
@@ -156,12 +273,67 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
      * Utility method that saves the current entry.
      */
     private void saveEntry() {
-        SvnEntry entry = new SvnEntry(date, revision, author, message,
-                                      paths);
-        entries.add(entry);
+        revisions++;
+        if (skip
+            || (null != filter && !filter.accepts(author, message, paths))) {
+            reset();
+            return;
+        }
+        SvnEntry entry = new SvnEntry(date, revision, author,
+                                      message.toString(), paths);
+        if (listener != null) {
+            listener.entryParsed(entry);
+        } else {
+            entries.add(entry);
+        }
         reset();
     }
 
+    /**
+     * Decodes a line and appends it to the message.
+     */
+    private void appendToMessage(final byte[] buf, final int off,
+                                 final int len) {
+        final int max = (int) (len * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < max) {
+            chars = CharBuffer.allocate(max);
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(buf, off, len), chars, true);
+        decoder.flush(chars);
+        message.append(chars.array(), 0, chars.position());
+    }
+
+    /**
+     * Parse date out from expected format.
+     *
+     * <p>svn always uses ASCII digits, anything else is left to
+     * SimpleDateFormat.</p>
+     *
+     * @param buf holds the date
+     * @param off offset of the date in the array
+     * @return the date object or null if unknown date format
+     */
+    private Date parseDate(final byte[] buf, final int off) {
+        int year = number(buf, off, 4);
+        int month = number(buf, off + 5, 2);
+        int day = number(buf, off + 8, 2);
+        int hour = number(buf, off + 11, 2);
+        int minute = number(buf, off + 14, 2);
+        int second = number(buf, off + 17, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0
+            || second < 0 || buf[off + 4] != '-' || buf[off + 7] != '-'
+            || buf[off + 10] != ' ' || buf[off + 13] != ':'
+            || buf[off + 16] != ':') {
+            return parseDate(new String(buf, off, PATTERN.length(),
+                                        getCharset()));
+        }
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTime();
+    }
+
     /**
      * Parse date out from expected format.
      *
@@ -170,7 +342,7 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
      */
     private Date parseDate(final String date) {
         try {
-            return INPUT_DATE.parse(date);
+            return inputDate.parse(date);
         } catch (ParseException e) {
             return null;
         }
@@ -182,8 +354,51 @@ class SvnChangeLogParser extends LineOrientedOutputStream {
     public void reset() {
         this.date = null;
         this.author = null;
-        this.message = "";
+        this.message.setLength(0);
         this.revision = null;
         this.paths.clear();
+        this.skip = false;
+    }
+
+    private static boolean isSeparator(final byte[] buf, final int off,
+                                       final int len) {
+        return len == SEPARATOR.length && startsWith(buf, off, len, SEPARATOR);
+    }
+
+    private static boolean endsWith(final byte[] buf, final int off,
+                                    final int len, final byte[] suffix) {
+        return len >= suffix.length
+            && startsWith(buf, off + len - suffix.length, suffix.length,
+                          suffix);
+    }
+
+    /**
+     * Index of the first occurrence of a sequence of bytes relative
+     * to off, -1 if there is none.
+     */
+    private static int indexOf(final byte[] buf, final int off, final int len,
+                               final byte[] s, final int from) {
+        for (int i = from; i <= len - s.length; i++) {
+            if (startsWith(buf, off + i, len - i, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a number of ASCII digits, -1 if there are other
+     * characters.
+     */
+    private static int number(final byte[] buf, final int off,
+                              final int digits) {
+        int n = 0;
+        for (int i = off; i < off + digits; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return -1;
+            }
+            n = n * 10 + buf[i] - '0';
+        }
+        return n;
     }
 }
@@ -17,27 +17,44 @@
  */
 package org.apache.ant.svn;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.Execute;
 import org.apache.tools.ant.taskdefs.LogOutputStream;
 import org.apache.tools.ant.taskdefs.PumpStreamHandler;
 import org.apache.tools.ant.taskdefs.condition.Os;
 import org.apache.tools.ant.taskdefs.cvslib.CvsUser;
+import org.apache.tools.ant.types.Commandline;
 import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.apache.tools.ant.util.FileUtils;
 
 /**
@@ -69,6 +86,8 @@ import org.apache.tools.ant.util.FileUtils;
  * @ant.task name="svnchangelog" category="scm"
  */
 public class SvnChangeLogTask extends AbstractSvnTask {
+    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
+
     // ? On windows ?
     private static final boolean ON_WINDOWS = Os.isFamily("windows");
 
@@ -76,7 +95,7 @@ public class SvnChangeLogTask extends AbstractSvnTask {
     private File usersFile;
 
     /** User list */
-    private Vector svnUsers = new Vector();
+    private Vector<CvsUser> svnUsers = new Vector<CvsUser>();
 
     /** Input dir */
     private File inputDir;
@@ -95,7 +114,77 @@ public class SvnChangeLogTask extends AbstractSvnTask {
      * performed. If empty then all files in the working directory will
      * be checked.
      */
-    private final Vector filesets = new Vector();
+    private final Vector<FileSet> filesets = new Vector<FileSet>();
+
+    /** Nested filters, all of them must accept an entry. */
+    private final Vector<ChangeLogFilter> filters =
+        new Vector<ChangeLogFilter>();
+
+    /** Combines the nested filters, null if there are none. */
+    private SvnEntryFilter entryFilter;
+
+    /** Repositories to combine in the changelog. */
+    private final Vector<ChangeLogRepository> repositories =
+        new Vector<ChangeLogRepository>();
+
+    /** Directory holding the cached svn log entries. */
+    private File cacheDir;
+
+    /** Which output of svn log to parse, "text" or "xml". */
+    private String parser = TEXT_PARSER;
+
+    /** Format of the changelog. */
+    private String format = ReportFormat.XML;
+
+    /** Title of an HTML report. */
+    private String title;
+
+    /** URL the paths are appended to for links in an HTML report. */
+    private String repoURL;
+
+    /** Number of svn log processes to run concurrently. */
+    private int parallelism = 1;
+
+    /** Maximum number of fileset files passed to a single svn log. */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Fraction of a directory's files that must be selected by the
+     * filesets to log the directory as a whole, 0 if the files are
+     * always logged individually.
+     */
+    private double compactionThreshold = 0;
+
+    /** Last revision to include in the changelog, -1 if unknown. */
+    private int endFilterRevision = -1;
+
+    /** Entries must be older than this, NO_TIME if unknown. */
+    private long endFilterTime = NO_TIME;
+
+    private static final String TEXT_PARSER = "text";
+    private static final String XML_PARSER = "xml";
+
+    private static final String HEAD = "HEAD";
+
+    /** marks a date bound that isn't known */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Maximum number of repositories whose logs are fetched at the
+     * same time unless parallelism has been set.
+     */
+    private static final int MAX_REPOSITORY_THREADS = 16;
+
+    /**
+     * svn's error code for a path that doesn't exist in any of the
+     * revisions of the requested range.
+     */
+    private static final String NO_LOCATION = "E195012";
+
+    /** separates a copied path from its source in svn log's output */
+    private static final String COPY_FROM = " (from ";
 
 
     /**
@@ -182,6 +271,123 @@ public class SvnChangeLogTask extends AbstractSvnTask {
     }
 
 
+    /**
+     * Set the parser to use for the output of svn log.
+     *
+     * <p>"text" (the default) parses the plain text output of svn
+     * log, "xml" runs svn log --xml and parses its output with a pull
+     * parser.  Both create the same changelog but "xml" doesn't get
+     * confused by commit messages that contain svn log's entry
+     * separator.</p>
+     *
+     * @param parser the parser to use
+     */
+    public void setParser(final String parser) {
+        this.parser = parser;
+    }
+
+
+    /**
+     * Set the format of the changelog.
+     *
+     * <p>"xml" (the default) creates the format the stylesheets
+     * expect, "jsonl" writes one JSON object per entry and line, "csv"
+     * one record per changed path and "html" the report
+     * changelog.xsl would create.</p>
+     *
+     * @param format the format
+     */
+    public void setFormat(final String format) {
+        this.format = format;
+    }
+
+
+    /**
+     * Set the title of an HTML report.
+     *
+     * @param title the title
+     */
+    public void setTitle(final String title) {
+        this.title = title;
+    }
+
+
+    /**
+     * Set the URL that the paths are appended to for links in an
+     * HTML report.
+     *
+     * @param repoURL the URL
+     */
+    public void setRepoURL(final String repoURL) {
+        this.repoURL = repoURL;
+    }
+
+
+    /**
+     * Set the directory in which svn log entries are cached.
+     *
+     * <p>Revisions are immutable, so subsequent runs only need to ask
+     * svn for revisions that are newer than the ones already
+     * cached.  The cache is only used for numeric revisions (and HEAD
+     * as end) and if no nested filesets have been specified.</p>
+     *
+     * @param cacheDir the cache directory
+     */
+    public void setCachedir(final File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+
+    /**
+     * Set the number of svn log processes to run concurrently.
+     *
+     * <p>If greater than one the range of revisions is resolved to
+     * revision numbers and split into as many contiguous sub-ranges,
+     * the results are combined in the order a single svn log would
+     * have returned them.  The entries of all sub-ranges are held in
+     * memory until the changelog is written.</p>
+     *
+     * @param parallelism the number of svn processes, defaults to 1
+     */
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * Set the maximum number of files of the nested filesets that are
+     * passed to a single svn log.
+     *
+     * <p>The files are passed via --targets files rather than the
+     * command line, each chunk of files gets its own svn log
+     * process.  Up to {@link #setParallelism parallelism} chunks run
+     * concurrently.</p>
+     *
+     * @param chunkSize the number of files, defaults to 1000
+     */
+    public void setChunksize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+
+    /**
+     * Log directories rather than files if the nested filesets
+     * select most of a directory's files.
+     *
+     * <p>The selected files are put into a prefix tree and replaced
+     * by the directories of which at least the given fraction of
+     * files have been selected.  svn log is run on those
+     * directories and only entries that changed a selected file
+     * are kept.</p>
+     *
+     * @param threshold the fraction, greater than 0 and not greater
+     * than 1
+     */
+    public void setCompactionthreshold(final double threshold) {
+        this.compactionThreshold = threshold;
+    }
+
+
     /**
      * Adds a set of files about which svn logs will be generated.
      *
@@ -192,6 +398,34 @@ public class SvnChangeLogTask extends AbstractSvnTask {
     }
 
 
+    /**
+     * Adds a filter that selects the entries of the changelog.
+     *
+     * <p>Filters are applied by the parser, entries they reject are
+     * never created.  If there is more than one filter all of them
+     * must accept an entry.</p>
+     *
+     * @param filter selects entries by author, paths and message
+     */
+    public void addFilter(final ChangeLogFilter filter) {
+        filters.addElement(filter);
+    }
+
+
+    /**
+     * Adds a repository whose log becomes part of the changelog.
+     *
+     * <p>If any repositories have been added, the logs of all of them
+     * are fetched concurrently and merged by date, the task's own dir
+     * or URL is not logged.</p>
+     *
+     * @param repository a working copy or URL
+     */
+    public void addRepository(final ChangeLogRepository repository) {
+        repositories.addElement(repository);
+    }
+
+
     /**
      * Execute task
      *
@@ -199,7 +433,14 @@ public class SvnChangeLogTask extends AbstractSvnTask {
      *            svn command
      */
     public void execute() throws BuildException {
+        if (executeInBackground()) {
+            return;
+        }
         File savedDir = inputDir; // may be altered in validate
+        // may be replaced by revision numbers
+        final String savedStart = startRevision;
+        final String savedEnd = endRevision;
+        startMetrics();
 
         try {
 
@@ -209,62 +450,1177 @@ public class SvnChangeLogTask extends AbstractSvnTask {
             loadUserlist(userList);
 
             for (int i = 0, size = svnUsers.size(); i < size; i++) {
-                final CvsUser user = (CvsUser) svnUsers.get(i);
+                final CvsUser user = svnUsers.get(i);
                 user.validate();
                 userList.put(user.getUserID(), user.getDisplayname());
             }
 
             setSubCommand("log");
             setVerbose(true);
+            setDest(inputDir);
+            entryFilter = createEntryFilter();
+            initEndFilter();
+            if (null != cacheDir && repositories.isEmpty()) {
+                resolveDates();
+            }
+            if (ReportFormat.HTML.equals(format) && null != startRevision
+                && isAscending()) {
+                // the report lists the newest entries first, let svn
+                // log return them in that order
+                final String start = startRevision;
+                startRevision = null != endRevision ? endRevision : HEAD;
+                endRevision = start;
+            }
+
+            SvnEntry[] entrySet = null;
+            if (!repositories.isEmpty()) {
+                entrySet = getRepositoryEntries();
+            } else if (null != cacheDir) {
+                entrySet = getCachedEntries();
+            }
+            FilesetTargets filesetTargets = null;
+            if (null == entrySet && !filesets.isEmpty()
+                && null == getTargets()) {
+                filesetTargets = getFilesetTargets();
+                if (null != filesetTargets
+                    && filesetTargets.paths.length > chunkSize) {
+                    entrySet =
+                        filesetTargets.select(runChunks(filesetTargets
+                                                        .paths));
+                }
+            }
+            if (null == entrySet && null == filesetTargets
+                && parallelism > 1) {
+                entrySet = getShardedEntries();
+            }
 
-            if (null != startRevision) {
-                if (null != endRevision) {
-                    setRevision(startRevision + ":" + endRevision);
+            final ChangeLogStream changeLog = new ChangeLogStream(userList);
+            changeLog.open();
+            boolean success = false;
+            try {
+                if (null != entrySet) {
+                    for (int i = 0; i < entrySet.length; i++) {
+                        changeLog.entryParsed(entrySet[i]);
+                    }
+                } else if (null != filesetTargets) {
+                    runLog(filesetTargets.select(changeLog),
+                           filesetTargets.paths);
                 } else {
-                    setRevision(startRevision + ":HEAD");
+                    runLog(changeLog, getFilesetFiles());
+                }
+                changeLog.close();
+                success = true;
+            } finally {
+                if (!success) {
+                    changeLog.abort();
                 }
             }
 
-            // Check if list of files to check has been specified
-            if (!filesets.isEmpty()) {
-                final Enumeration e = filesets.elements();
+        } finally {
+            inputDir = savedDir;
+            startRevision = savedStart;
+            endRevision = savedEnd;
+            publishMetrics();
+        }
+    }
 
-                while (e.hasMoreElements()) {
-                    final FileSet fileSet = (FileSet) e.nextElement();
-                    final DirectoryScanner scanner =
-                        fileSet.getDirectoryScanner(getProject());
-                    final String[] files = scanner.getIncludedFiles();
+    /**
+     * Runs svn log as configured by the task's attributes.
+     *
+     * <p>The files are passed via a --targets file unless the
+     * targets attribute has been set.</p>
+     *
+     * @param listener receives the entries as soon as they have been
+     * parsed
+     * @param files the files to log, may be empty
+     */
+    private void runLog(final SvnEntryListener listener,
+                        final String[] files) {
+        SvnCommand command = new SvnCommand(getSubCommand());
+        if (XML_PARSER.equals(parser)) {
+            command = command.withArgument("--xml");
+        }
 
-                    for (int i = 0; i < files.length; i++) {
-                        addSubCommandArgument(files[i]);
+        if (null != startRevision) {
+            command = command.withRevision(getRevisionRange());
+        }
+
+        File targetsFile = null;
+        if (files.length > 0 && null == getTargets()) {
+            targetsFile = createTargetsFile(files);
+            command = command.withArguments(new String[] {
+                    "--targets", targetsFile.getAbsolutePath()
+                });
+        } else {
+            command = command.withArguments(files);
+        }
+
+        final OutputStream logParser = createLogParser(listener, entryFilter);
+        final PumpStreamHandler handler =
+            new PumpStreamHandler(logParser,
+                                  new LogOutputStream(this,
+                                                      Project.MSG_ERR));
+
+        log(getSubCommand(), Project.MSG_VERBOSE);
+
+        setExecuteStreamHandler(handler);
+        boolean success = false;
+        try {
+            executeCommands(command);
+            success = true;
+        } finally {
+            if (!success) {
+                FileUtils.close(logParser);
+            }
+            if (null != targetsFile) {
+                targetsFile.delete();
+            }
+        }
+        finishParsing(logParser);
+    }
+
+    /**
+     * Runs svn log for a range of revisions, bypassing the task's
+     * own command line.
+     *
+     * <p>The range is split into up to {@link #setParallelism
+     * parallelism} contiguous shards that are run concurrently.</p>
+     *
+     * @param first first revision svn log should report
+     * @param last last revision svn log should report
+     * @param filter selects the entries, accept all if null
+     * @return the parsed entries in the order svn log would have
+     * returned them or null if svn failed
+     */
+    private SvnEntry[] runLog(final int first, final int last,
+                              final SvnEntryFilter filter) {
+        final boolean ascending = first <= last;
+        final int min = Math.min(first, last);
+        final long size = (long) Math.max(first, last) - min + 1;
+        final int shards = (int) Math.min(parallelism, size);
+        if (shards <= 1) {
+            return runShard(first, last, filter);
+        }
+        log("Running svn log for revisions " + first + " to " + last
+            + " in " + shards + " shards", Project.MSG_VERBOSE);
+
+        final List<Callable<SvnEntry[]>> jobs =
+            new ArrayList<Callable<SvnEntry[]>>(shards);
+        for (int i = 0; i < shards; i++) {
+            final int shard = ascending ? i : shards - 1 - i;
+            final int low = min + (int) (size * shard / shards);
+            final int high = min + (int) (size * (shard + 1) / shards) - 1;
+            final int from = ascending ? low : high;
+            final int to = ascending ? high : low;
+            jobs.add(new Callable<SvnEntry[]>() {
+                    public SvnEntry[] call() {
+                        return runShard(from, to, filter);
+                    }
+                });
+        }
+        final SvnEntry[][] results = runConcurrently(jobs, shards);
+        if (null == results) {
+            return null;
+        }
+        final ArrayList<SvnEntry> entries = new ArrayList<SvnEntry>();
+        for (int i = 0; i < results.length; i++) {
+            entries.addAll(Arrays.asList(results[i]));
+        }
+        return entries.toArray(new SvnEntry[entries.size()]);
+    }
+
+    /**
+     * Runs svn log on all nested repositories concurrently and merges
+     * their entries by date.
+     *
+     * @return the entries of all repositories
+     */
+    private SvnEntry[] getRepositoryEntries() {
+        final String revision = getRevisionRange();
+        final ChangeLogRepository[] repos =
+            repositories.toArray(new ChangeLogRepository[repositories.size()]);
+        final int threads = parallelism > 1 ? parallelism
+            : Math.min(repos.length, MAX_REPOSITORY_THREADS);
+        log("Running svn log for " + repos.length + " repositories using "
+            + Math.min(threads, repos.length) + " threads",
+            Project.MSG_VERBOSE);
+
+        final List<Callable<SvnEntry[]>> jobs =
+            new ArrayList<Callable<SvnEntry[]>>(repos.length);
+        for (int i = 0; i < repos.length; i++) {
+            final ChangeLogRepository repo = repos[i];
+            jobs.add(new Callable<SvnEntry[]>() {
+                    public SvnEntry[] call() {
+                        return runRepository(repo, revision);
                     }
+                });
+        }
+        return mergeByDate(runConcurrently(jobs,
+                                           Math.min(threads, repos.length)));
+    }
+
+    /**
+     * Runs svn log for a single repository.
+     *
+     * @param repo the repository
+     * @param revision the revision range, may be null
+     * @return the parsed entries, empty if svn failed and failonerror
+     * is not set
+     */
+    private SvnEntry[] runRepository(final ChangeLogRepository repo,
+                                     final String revision) {
+        final Commandline c = new Commandline();
+        c.createArgument().setValue(getSubCommand());
+        if (XML_PARSER.equals(parser)) {
+            c.createArgument().setValue("--xml");
+        }
+        if (null != revision) {
+            c.createArgument().setValue("--revision");
+            c.createArgument().setValue(revision);
+        }
+        c.createArgument().setValue(repo.getTarget());
+        configureCommandline(c);
+
+        final OutputStream logParser = createLogParser(null, entryFilter);
+        boolean success = false;
+        int retCode = Execute.INVALID;
+        try {
+            retCode =
+                runCommand(c, new PumpStreamHandler(logParser,
+                                                    new LogOutputStream(
+                                                        this,
+                                                        Project.MSG_ERR)));
+            success = true;
+        } finally {
+            if (!success) {
+                FileUtils.close(logParser);
+            }
+        }
+        final SvnEntry[] entries = getEntries(logParser);
+        if (Execute.isFailure(retCode)) {
+            log("svn log failed for " + repo.getTarget(), Project.MSG_WARN);
+            return new SvnEntry[0];
+        }
+        final String name = repo.getName();
+        for (int i = 0; i < entries.length; i++) {
+            entries[i].setRepository(name);
+        }
+        return entries;
+    }
+
+    /**
+     * Merges the logs of several repositories by date.
+     *
+     * <p>Each log is in the order svn has reported it, which is the
+     * same for all of them since they have been created for the same
+     * revision range.  Entries with the same date keep the order of
+     * the repositories.</p>
+     *
+     * @param logs the entries of each repository
+     */
+    private SvnEntry[] mergeByDate(final SvnEntry[][] logs) {
+        boolean ascending = null != startRevision
+            && !HEAD.equals(startRevision);
+        int total = 0;
+        boolean orderKnown = false;
+        for (int i = 0; i < logs.length; i++) {
+            total += logs[i].length;
+            if (!orderKnown && logs[i].length > 1) {
+                ascending = getTime(logs[i][0])
+                    <= getTime(logs[i][logs[i].length - 1]);
+                orderKnown = true;
+            }
+        }
+        final SvnEntry[] merged = new SvnEntry[total];
+        final int[] next = new int[logs.length];
+        for (int n = 0; n < total; n++) {
+            int best = -1;
+            for (int i = 0; i < logs.length; i++) {
+                if (next[i] < logs[i].length
+                    && (best < 0
+                        || isBefore(logs[i][next[i]], logs[best][next[best]],
+                                    ascending))) {
+                    best = i;
                 }
             }
+            merged[n] = logs[best][next[best]++];
+        }
+        return merged;
+    }
 
-            final SvnChangeLogParser parser = new SvnChangeLogParser();
-            final PumpStreamHandler handler =
-                new PumpStreamHandler(parser,
-                                      new LogOutputStream(this,
-                                                          Project.MSG_ERR));
+    /**
+     * Whether an entry belongs in front of another one.
+     */
+    private static boolean isBefore(final SvnEntry e1, final SvnEntry e2,
+                                    final boolean ascending) {
+        return ascending ? getTime(e1) < getTime(e2)
+            : getTime(e1) > getTime(e2);
+    }
 
-            log(getSubCommand(), Project.MSG_VERBOSE);
+    private static long getTime(final SvnEntry e) {
+        return null != e.getDate() ? e.getDate().getTime() : NO_TIME;
+    }
 
-            setDest(inputDir);
-            setExecuteStreamHandler(handler);
-            super.execute();
+    /**
+     * The paths to run svn log on for the nested filesets: their
+     * files or - if compactionthreshold has been set - the
+     * directories covering them.
+     *
+     * @return the paths or null if the filesets are empty
+     */
+    private FilesetTargets getFilesetTargets() {
+        if (compactionThreshold > 0) {
+            final String repositoryPath = getRepositoryPath();
+            if (null != repositoryPath) {
+                final PathTrie selection = getFilesetTrie();
+                final String[] paths =
+                    selection.getCoveringPaths(compactionThreshold);
+                if (paths.length == 0) {
+                    return null;
+                }
+                log("Logging " + paths.length + " files and directories"
+                    + " covering the selected files", Project.MSG_VERBOSE);
+                return new FilesetTargets(paths, selection, repositoryPath);
+            }
+            log("Not compacting the filesets, svn info failed",
+                Project.MSG_WARN);
+        }
+        final String[] files = getFilesetFiles();
+        if (files.length == 0) {
+            return null;
+        }
+        return new FilesetTargets(files, null, null);
+    }
+
+    /**
+     * Runs svn log for files passing them in chunks via --targets
+     * files.
+     *
+     * <p>svn log -v reports all paths of a revision, no matter
+     * which of its targets have been changed, so entries reported
+     * for more than one chunk are identical and only kept once.</p>
+     *
+     * @param files the files
+     * @return the entries in the same order svn log would have
+     * returned them
+     */
+    private SvnEntry[] runChunks(final String[] files) {
+        final String revision = getRevisionRange();
+        final int chunks = (files.length + chunkSize - 1) / chunkSize;
+        log("Running svn log for " + files.length + " files in " + chunks
+            + " chunks", Project.MSG_VERBOSE);
+
+        final List<Callable<SvnEntry[]>> jobs =
+            new ArrayList<Callable<SvnEntry[]>>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = i * chunkSize;
+            final String[] chunk = new String[Math.min(chunkSize,
+                                                       files.length - from)];
+            System.arraycopy(files, from, chunk, 0, chunk.length);
+            jobs.add(new Callable<SvnEntry[]>() {
+                    public SvnEntry[] call() {
+                        return runChunk(revision, chunk);
+                    }
+                });
+        }
+        final SvnEntry[][] results =
+            runConcurrently(jobs, Math.min(parallelism, chunks));
+        if (results.length == 1) {
+            return results[0];
+        }
+
+        final TreeMap<Integer, SvnEntry> byRevision =
+            new TreeMap<Integer, SvnEntry>();
+        for (int i = 0; i < results.length; i++) {
+            final SvnEntry[] entries = results[i];
+            for (int j = 0; j < entries.length; j++) {
+                final Integer r = Integer.valueOf(entries[j].getRevision());
+                if (!byRevision.containsKey(r)) {
+                    byRevision.put(r, entries[j]);
+                }
+            }
+        }
+        final ArrayList<SvnEntry> entries =
+            new ArrayList<SvnEntry>(byRevision.values());
+        if (!isAscending()) {
+            Collections.reverse(entries);
+        }
+        return entries.toArray(new SvnEntry[entries.size()]);
+    }
 
-            final SvnEntry[] entrySet = parser.getEntrySetAsArray();
-            final SvnEntry[] filteredEntrySet = filterEntrySet(entrySet);
+    /**
+     * Whether an entry belongs to the selected files.
+     *
+     * <p>Accepts entries that have changed a selected file or copied
+     * one of the directories containing a selected file, those are
+     * the revisions svn log reports for the files themselves.
+     * Directories added without history are ignored, svn lists the
+     * files added with them separately.</p>
+     *
+     * @param entry an entry reported for the covering paths
+     * @param selection the selected files
+     * @param repositoryPath the path inside the repository the
+     * files are relative to
+     */
+    private static boolean isSelected(final SvnEntry entry,
+                                      final PathTrie selection,
+                                      final String repositoryPath) {
+        final SvnEntry.Path[] paths = entry.getPaths();
+        for (int j = 0; j < paths.length; j++) {
+            String name = paths[j].getName();
+            final int from = name.indexOf(COPY_FROM);
+            final boolean copied = from > -1
+                && paths[j].getAction() == SvnEntry.Path.ADDED;
+            if (from > -1) {
+                name = name.substring(0, from);
+            }
+            if (name.equals(repositoryPath)
+                || name.startsWith(repositoryPath + "/")) {
+                final String relative = name.substring(repositoryPath.length());
+                if (selection.isSelected(relative)
+                    || (copied && selection.containsSelected(relative))) {
+                    return true;
+                }
+            } else if (copied && repositoryPath.startsWith(name + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            replaceAuthorIdWithName(userList, filteredEntrySet);
+    /**
+     * Runs svn log for a chunk of files.
+     *
+     * @param revision the revision range, may be null
+     * @param files the files, written to a temporary --targets file
+     * @return the parsed entries
+     */
+    private SvnEntry[] runChunk(final String revision, final String[] files) {
+        final File targetsFile = createTargetsFile(files);
+        try {
 
-            writeChangeLog(filteredEntrySet);
+            final Commandline c = new Commandline();
+            c.createArgument().setValue(getSubCommand());
+            if (XML_PARSER.equals(parser)) {
+                c.createArgument().setValue("--xml");
+            }
+            if (null != revision) {
+                c.createArgument().setValue("--revision");
+                c.createArgument().setValue(revision);
+            }
+            c.createArgument().setValue("--targets");
+            c.createArgument().setFile(targetsFile);
+            if (getSvnURL() != null) {
+                c.createArgument().setValue(getSvnURL());
+            }
+            configureCommandline(c);
 
+            final OutputStream logParser =
+                createLogParser(null, entryFilter);
+            boolean success = false;
+            try {
+                runCommand(c,
+                           new PumpStreamHandler(logParser,
+                                                 new LogOutputStream(this,
+                                                                     Project
+                                                                     .MSG_ERR)));
+                success = true;
+            } finally {
+                if (!success) {
+                    FileUtils.close(logParser);
+                }
+            }
+            return getEntries(logParser);
         } finally {
-            inputDir = savedDir;
+            targetsFile.delete();
         }
     }
 
+    /**
+     * Creates a temporary file for svn's --targets option, the caller
+     * must delete it.
+     */
+    private File createTargetsFile(final String[] files) {
+        final File targetsFile =
+            FILE_UTILS.createTempFile(getProject(), "svntargets", ".txt",
+                                      null, true, true);
+        BufferedWriter w = null;
+        try {
+            w = new BufferedWriter(new OutputStreamWriter(
+                                       new FileOutputStream(targetsFile)));
+            for (int i = 0; i < files.length; i++) {
+                w.write(files[i]);
+                w.newLine();
+            }
+            w.close();
+            w = null;
+            return targetsFile;
+        } catch (final IOException ioe) {
+            FileUtils.close(w);
+            targetsFile.delete();
+            throw new BuildException("failed to write " + targetsFile, ioe);
+        } finally {
+            FileUtils.close(w);
+        }
+    }
+
+    /**
+     * Runs jobs using a given number of threads.
+     *
+     * <p>If a job returns null the remaining jobs are cancelled,
+     * which kills their svn processes.</p>
+     *
+     * @param jobs the jobs to run
+     * @param threads the number of threads
+     * @return the results of the jobs in the order of the jobs or
+     * null if any of the jobs has returned null
+     */
+    private static SvnEntry[][]
+        runConcurrently(final List<Callable<SvnEntry[]>> jobs,
+                        final int threads) {
+        final SvnEntry[][] results = new SvnEntry[jobs.size()][];
+        if (threads <= 1) {
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    results[i] = jobs.get(i).call();
+                } catch (final RuntimeException e) {
+                    throw e;
+                } catch (final Exception e) {
+                    throw new BuildException(e);
+                }
+                if (null == results[i]) {
+                    return null;
+                }
+            }
+            return results;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<SvnEntry[]>> futures =
+                new ArrayList<Future<SvnEntry[]>>(results.length);
+            for (int i = 0; i < results.length; i++) {
+                futures.add(executor.submit(jobs.get(i)));
+            }
+            for (int i = 0; i < results.length; i++) {
+                results[i] = get(futures.get(i));
+                if (null == results[i]) {
+                    return null;
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs svn log for a single range of revisions.
+     *
+     * <p>A range in which the path didn't exist yet is reported as
+     * empty, just like svn log reports nothing for those revisions
+     * if they are part of a bigger range.  Other failures are only
+     * logged at verbose level, the caller falls back to running svn
+     * log with the task's own command line which reports them.</p>
+     *
+     * @param from first revision of the range
+     * @param to last revision of the range
+     * @param filter selects the entries, accept all if null
+     * @return the parsed entries or null if svn failed
+     */
+    private SvnEntry[] runShard(final int from, final int to,
+                                final SvnEntryFilter filter) {
+        final Commandline c = new Commandline();
+        c.createArgument().setValue(getSubCommand());
+        if (XML_PARSER.equals(parser)) {
+            c.createArgument().setValue("--xml");
+        }
+        c.createArgument().setValue("--revision");
+        c.createArgument().setValue(from + ":" + to);
+        if (getSvnURL() != null) {
+            c.createArgument().setValue(getSvnURL());
+        }
+        final String[] files = getFilesetFiles();
+        for (int i = 0; i < files.length; i++) {
+            c.createArgument().setValue(files[i]);
+        }
+        configureCommandline(c);
+
+        final OutputStream logParser = createLogParser(null, filter);
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        boolean success = false;
+        int retCode = Execute.INVALID;
+        try {
+            retCode = runCommand(c, new PumpStreamHandler(logParser, errors));
+            success = true;
+        } catch (final BuildException e) {
+            // failonerror is set, the caller decides whether this is
+            // fatal
+            log(e.getMessage(), Project.MSG_VERBOSE);
+        } finally {
+            if (!success) {
+                FileUtils.close(logParser);
+            }
+        }
+        final SvnEntry[] entries = getEntries(logParser);
+        if (!Execute.isFailure(retCode)) {
+            return entries;
+        }
+        final String error = errors.toString();
+        if (error.indexOf(NO_LOCATION) > -1) {
+            log("No history for revisions " + from + " to " + to,
+                Project.MSG_VERBOSE);
+            return new SvnEntry[0];
+        }
+        log(error, Project.MSG_VERBOSE);
+        return null;
+    }
+
+    /**
+     * Waits for a shard to complete.
+     */
+    private static SvnEntry[] get(final Future<SvnEntry[]> result) {
+        try {
+            return result.get();
+        } catch (final InterruptedException e) {
+            throw new BuildException("interrupted while waiting for svn log",
+                                     e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BuildException(e.getCause());
+        }
+    }
+
+    /**
+     * The files of all nested filesets.
+     */
+    private String[] getFilesetFiles() {
+        final ArrayList<String> l = new ArrayList<String>();
+        final Enumeration<FileSet> e = filesets.elements();
+        while (e.hasMoreElements()) {
+            final FileSet fileSet = e.nextElement();
+            final DirectoryScanner scanner =
+                fileSet.getDirectoryScanner(getProject());
+            l.addAll(Arrays.asList(scanner.getIncludedFiles()));
+        }
+        return l.toArray(new String[l.size()]);
+    }
+
+    /**
+     * All files of the nested filesets, the selected ones and the
+     * ones that haven't been selected.
+     */
+    private PathTrie getFilesetTrie() {
+        final PathTrie trie = new PathTrie();
+        final String[] defaultExcludes = DirectoryScanner.getDefaultExcludes();
+        final Enumeration<FileSet> e = filesets.elements();
+        while (e.hasMoreElements()) {
+            final FileSet fileSet = e.nextElement();
+            final DirectoryScanner scanner =
+                fileSet.getDirectoryScanner(getProject());
+            addFiles(trie, scanner.getIncludedFiles(), true, null);
+            addFiles(trie, scanner.getNotIncludedFiles(), false, null);
+            addFiles(trie, scanner.getDeselectedFiles(), false, null);
+            // svn's administrative files don't count
+            addFiles(trie, scanner.getExcludedFiles(), false,
+                     defaultExcludes);
+        }
+        return trie;
+    }
+
+    private static void addFiles(final PathTrie trie, final String[] files,
+                                 final boolean selected,
+                                 final String[] ignored) {
+        for (int i = 0; i < files.length; i++) {
+            boolean add = true;
+            for (int j = 0; add && null != ignored && j < ignored.length;
+                 j++) {
+                add = !SelectorUtils.matchPath(ignored[j], files[i]);
+            }
+            if (add) {
+                trie.add(files[i], selected);
+            }
+        }
+    }
+
+    /**
+     * The path inside the repository of the working copy or URL the
+     * task runs svn log on, without a trailing slash.
+     *
+     * @return the path or null if svn info failed
+     */
+    private String getRepositoryPath() {
+        final String target = getSvnURL() != null ? getSvnURL() : ".";
+        final SvnInfo info = SvnInfo.get(this, target, null);
+        final String url = info.getURL();
+        final String root = info.getRepositoryRoot();
+        if (null == url || null == root || !url.startsWith(root)) {
+            return null;
+        }
+        String path = url.substring(root.length());
+        try {
+            path = URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (final IOException ioe) {
+            // UTF-8 is always supported
+            throw new BuildException(ioe);
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1)
+            : path;
+    }
+
+    /**
+     * Creates the parser selected by the parser attribute.
+     *
+     * @param listener receives the entries as soon as they have been
+     * parsed, the parser collects them if null
+     * @param filter selects the entries, accept all if null
+     */
+    private OutputStream createLogParser(final SvnEntryListener listener,
+                                         final SvnEntryFilter filter) {
+        return XML_PARSER.equals(parser)
+            ? (OutputStream) new SvnChangeLogXmlParser(listener, filter)
+            : new SvnChangeLogParser(listener, filter);
+    }
+
+    /**
+     * Combines the nested filters.
+     *
+     * @return null if there are no filters
+     */
+    private SvnEntryFilter createEntryFilter() {
+        if (filters.isEmpty()) {
+            return null;
+        }
+        if (filters.size() == 1) {
+            return filters.elementAt(0);
+        }
+        final SvnEntryFilter[] all =
+            filters.toArray(new SvnEntryFilter[filters.size()]);
+        return new SvnEntryFilter() {
+            public boolean acceptsAuthor(final String author) {
+                for (int i = 0; i < all.length; i++) {
+                    if (!all[i].acceptsAuthor(author)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            public boolean accepts(final String author,
+                                   final CharSequence message,
+                                   final Collection<SvnEntry.Path> paths) {
+                for (int i = 0; i < all.length; i++) {
+                    if (!all[i].accepts(author, message, paths)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Removes the entries rejected by the nested filters.
+     */
+    private SvnEntry[] filterEntries(final SvnEntry[] entries) {
+        if (null == entryFilter) {
+            return entries;
+        }
+        final ArrayList<SvnEntry> l = new ArrayList<SvnEntry>();
+        for (int i = 0; i < entries.length; i++) {
+            if (entryFilter.accepts(entries[i].getAuthor(),
+                                    entries[i].getMessage(),
+                                    Arrays.asList(entries[i].getPaths()))) {
+                l.add(entries[i]);
+            }
+        }
+        return l.toArray(new SvnEntry[l.size()]);
+    }
+
+    /**
+     * Waits for the parser to complete.
+     */
+    private void finishParsing(final OutputStream logParser) {
+        try {
+            logParser.close();
+        } catch (final IOException ioe) {
+            throw new BuildException(ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Waits for the parser to complete and returns the entries it has
+     * collected.
+     */
+    private SvnEntry[] getEntries(final OutputStream logParser) {
+        finishParsing(logParser);
+        return ((LogParser) logParser).getEntrySetAsArray();
+    }
+
+    /**
+     * Reads the requested entries from the cache, updating the cache
+     * with revisions it doesn't hold yet.
+     *
+     * <p>Only numeric revisions (and HEAD as end revision) are
+     * supported, as are logs for the whole directory or URL.</p>
+     *
+     * @return the entries in the same order svn log would have
+     * returned them or null if the cache cannot be used.
+     */
+    private SvnEntry[] getCachedEntries() {
+        final boolean startIsNumber = isNumber(startRevision);
+        final boolean endIsNumber = isNumber(endRevision);
+        if (!filesets.isEmpty()
+            || (null != startRevision && !startIsNumber
+                && !HEAD.equals(startRevision))
+            || (null != endRevision && !endIsNumber
+                && !HEAD.equals(endRevision))) {
+            log("Not using the cache, it only supports numeric revisions"
+                + " for logs without filesets.", Project.MSG_VERBOSE);
+            return null;
+        }
+
+        final String target = getSvnURL() != null ? getSvnURL() : ".";
+        // without a start revision svn log runs from BASE (working
+        // copy) or HEAD (URL) to 1, that's what svn info reports
+        // without a revision as well
+        final boolean needsHead = null != startRevision
+            && (!startIsNumber || !endIsNumber);
+        final SvnInfo info =
+            SvnInfo.get(this, target, needsHead ? HEAD : null);
+        if (null == info.getUUID() || null == info.getURL()
+            || info.getRevision() < 0) {
+            log("Not using the cache, svn info failed for " + target,
+                Project.MSG_WARN);
+            return null;
+        }
+
+        final int first;
+        final int last;
+        if (null == startRevision) {
+            first = info.getRevision();
+            last = 1;
+        } else {
+            first = startIsNumber ? Integer.parseInt(startRevision)
+                : info.getRevision();
+            last = endIsNumber ? Integer.parseInt(endRevision)
+                : info.getRevision();
+        }
+        final int min = Math.min(first, last);
+        final int max = Math.max(first, last);
+
+        final SvnChangeLogCache cache =
+            new SvnChangeLogCache(cacheDir, info.getUUID(), info.getURL());
+        try {
+            cache.load();
+        } catch (final IOException ioe) {
+            log("Ignoring unreadable cache: " + ioe.getMessage(),
+                Project.MSG_WARN);
+        }
+
+        final boolean contiguous = cache.isContiguous(min, max);
+        final int low = cache.getLow();
+        final int high = cache.getHigh();
+        if (!contiguous || min < low) {
+            final int to = contiguous ? low - 1 : max;
+            if (!fetch(cache, min, to)) {
+                return null;
+            }
+        }
+        if (contiguous && max > high) {
+            if (!fetch(cache, high + 1, max)) {
+                return null;
+            }
+        }
+        if (!contiguous || min < low || max > high) {
+            try {
+                cache.save();
+            } catch (final IOException ioe) {
+                log("Failed to update the cache: " + ioe.getMessage(),
+                    Project.MSG_WARN);
+            }
+        } else {
+            log("All revisions found in cache", Project.MSG_VERBOSE);
+        }
+        // the cache holds all entries, filter them now
+        return filterEntries(cache.getEntries(min, max, first <= last));
+    }
+
+    /**
+     * Resolves the requested range to revision numbers and runs svn
+     * log in shards.
+     *
+     * @return the entries in the same order svn log would have
+     * returned them or null if the range cannot be resolved or svn
+     * failed.
+     */
+    private SvnEntry[] getShardedEntries() {
+        final String target = getSvnURL() != null ? getSvnURL() : ".";
+        final int first;
+        final int last;
+        if (null == startRevision) {
+            // svn log runs from BASE (working copy) or HEAD (URL) to 1
+            first = resolveRevision(target, null);
+            last = 1;
+        } else {
+            first = resolveRevision(target, startRevision);
+            last = resolveRevision(target, null != endRevision
+                                   ? endRevision : HEAD);
+        }
+        if (first < 0 || last < 0) {
+            log("Not running svn log in parallel, failed to resolve the"
+                + " revision range", Project.MSG_WARN);
+            return null;
+        }
+        final SvnEntry[] entries = runLog(first, last, entryFilter);
+        if (null == entries) {
+            log("Parallel svn log failed, running it again serially",
+                Project.MSG_VERBOSE);
+        }
+        return entries;
+    }
+
+    /**
+     * The value of svn log's --revision option.
+     *
+     * @return the range or null if svn log's default should be used
+     */
+    private String getRevisionRange() {
+        if (null == startRevision) {
+            return null;
+        }
+        return startRevision + ":"
+            + (null != endRevision ? endRevision : HEAD);
+    }
+
+    /**
+     * Whether svn log is going to report the revisions in ascending
+     * order.
+     */
+    private boolean isAscending() {
+        if (null == startRevision) {
+            // BASE or HEAD to 1
+            return false;
+        }
+        if (null == endRevision || HEAD.equals(endRevision)) {
+            return true;
+        }
+        if (isNumber(startRevision) && isNumber(endRevision)) {
+            return Integer.parseInt(startRevision)
+                <= Integer.parseInt(endRevision);
+        }
+        final long startTime = parseDate(startRevision, true);
+        final long endTime = parseDate(endRevision, true);
+        if (NO_TIME != startTime && NO_TIME != endTime) {
+            return startTime <= endTime;
+        }
+        final String target = getSvnURL() != null ? getSvnURL() : ".";
+        return resolveRevision(target, startRevision)
+            <= resolveRevision(target, endRevision);
+    }
+
+    /**
+     * Resolves a revision, date or keyword to a revision number.
+     *
+     * @param target the path or URL svn info is run on
+     * @param revision the revision, null for svn info's default
+     * @return the number or -1 if svn info failed
+     */
+    private int resolveRevision(final String target, final String revision) {
+        if (isNumber(revision)) {
+            return Integer.parseInt(revision);
+        }
+        return SvnInfo.get(this, target, revision).getRevision();
+    }
+
+    /**
+     * Computes the limit of the end filter once, so it doesn't have
+     * to be parsed for each entry.
+     */
+    private void initEndFilter() {
+        endFilterRevision = -1;
+        endFilterTime = NO_TIME;
+        if (isNumber(endRevision)) {
+            endFilterRevision = Integer.parseInt(endRevision);
+        } else {
+            endFilterTime = parseDate(endRevision, false);
+        }
+    }
+
+    /**
+     * Replaces start and end dates by revision numbers using the
+     * revision index kept in the cache directory.
+     *
+     * <p>The end filter only keeps entries strictly before the end
+     * date, it is turned into a revision as well.</p>
+     */
+    private void resolveDates() {
+        final long start = parseDate(startRevision, true);
+        final long end = parseDate(endRevision, true);
+        if (NO_TIME == start && NO_TIME == end) {
+            return;
+        }
+        final String target = getSvnURL() != null ? getSvnURL() : ".";
+        final SvnInfo info = SvnInfo.get(this, target, HEAD);
+        if (null == info.getUUID() || null == info.getRepositoryRoot()
+            || info.getRevision() < 0) {
+            log("Not using the revision index, svn info failed for "
+                + target, Project.MSG_WARN);
+            return;
+        }
+
+        final int head = info.getRevision();
+        final String root = info.getRepositoryRoot();
+        final SvnRevisionIndex index =
+            new SvnRevisionIndex(cacheDir, info.getUUID());
+        try {
+            index.load();
+        } catch (final IOException ioe) {
+            log("Ignoring unreadable revision index: " + ioe.getMessage(),
+                Project.MSG_WARN);
+        }
+
+        // let svn resolve the dates the index doesn't know and fetch
+        // the revisions around them
+        int from = Integer.MAX_VALUE;
+        int to = -1;
+        final String[] dates = {startRevision, endRevision};
+        final long[] times = {start, end};
+        for (int i = 0; i < dates.length; i++) {
+            if (NO_TIME != times[i] && !index.resolves(times[i], head)) {
+                final int rev = resolveDate(root, dates[i]);
+                if (rev < 0) {
+                    log("Not using the revision index, svn info failed for "
+                        + dates[i], Project.MSG_WARN);
+                    return;
+                }
+                from = Math.min(from, rev);
+                to = Math.max(to, Math.min(rev + 1, head));
+            }
+        }
+        if (to >= 0) {
+            log("Extending the revision index to revisions " + from
+                + " to " + to, Project.MSG_VERBOSE);
+            if (!index.update(this, root, from, to)) {
+                log("Not using the revision index, svn log failed",
+                    Project.MSG_WARN);
+                return;
+            }
+            try {
+                index.save();
+            } catch (final IOException ioe) {
+                log("Failed to update the revision index: "
+                    + ioe.getMessage(), Project.MSG_WARN);
+            }
+        }
+        if ((NO_TIME != start && !index.resolves(start, head))
+            || (NO_TIME != end && !index.resolves(end - 1, head))) {
+            // revisions committed at the very same time
+            log("Not using the revision index, it doesn't cover the dates",
+                Project.MSG_VERBOSE);
+            return;
+        }
+
+        if (NO_TIME != start) {
+            startRevision = String.valueOf(index.getRevision(start));
+        }
+        if (NO_TIME != end) {
+            endRevision = String.valueOf(index.getRevision(end));
+            endFilterRevision = index.getRevision(end - 1);
+            endFilterTime = NO_TIME;
+        }
+        log("Resolved the revision range to " + getRevisionRange(),
+            Project.MSG_VERBOSE);
+    }
+
+    /**
+     * The revision svn resolves a date to.
+     *
+     * @param root the URL of the repository root
+     * @param date the date in svn's revision syntax, possibly
+     * enclosed in quotes
+     * @return the revision or -1 if svn info failed
+     */
+    private int resolveDate(final String root, final String date) {
+        String revision = date;
+        if (revision.length() > 1 && revision.startsWith("\"")
+            && revision.endsWith("\"")) {
+            revision = revision.substring(1, revision.length() - 1);
+        }
+        try {
+            return SvnInfo.get(this, root, revision).getRevision();
+        } catch (final BuildException e) {
+            // failonerror is set, svn can still resolve the dates
+            log(e.getMessage(), Project.MSG_VERBOSE);
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a date given in svn's {yyyy-MM-dd} revision syntax,
+     * possibly enclosed in quotes.
+     *
+     * @param revision the revision
+     * @param exact whether the date must not be followed by
+     * anything else, like a time
+     * @return the start of the day in the local time zone or NO_TIME
+     * if revision is not a date
+     */
+    private static long parseDate(final String revision,
+                                  final boolean exact) {
+        if (null == revision) {
+            return NO_TIME;
+        }
+        String date = revision;
+        if (date.length() > 1 && date.startsWith("\"")
+            && date.endsWith("\"")) {
+            date = date.substring(1, date.length() - 1);
+        }
+        if (!date.startsWith("{") || date.length() < 2 + PATTERN.length()
+            || (exact && date.length() != 2 + PATTERN.length())
+            || !date.endsWith("}")) {
+            return NO_TIME;
+        }
+        try {
+            return new SimpleDateFormat(PATTERN)
+                .parse(date.substring(1, PATTERN.length() + 1)).getTime();
+        } catch (final ParseException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Runs svn log for a range of revisions and adds the result to
+     * the cache.
+     *
+     * @return false if svn failed
+     */
+    private boolean fetch(final SvnChangeLogCache cache, final int from,
+                          final int to) {
+        log("Fetching revisions " + from + " to " + to + " for the cache",
+            Project.MSG_VERBOSE);
+        final SvnEntry[] entries = runLog(from, to, null);
+        if (null == entries) {
+            log("Not using the cache, svn log failed", Project.MSG_WARN);
+            return false;
+        }
+        cache.add(from, to, entries);
+        return true;
+    }
+
+    private static boolean isNumber(final String s) {
+        if (null == s || s.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Validate the parameters specified for task.
      *
@@ -275,6 +1631,9 @@ public class SvnChangeLogTask extends AbstractSvnTask {
         if (null == inputDir) {
             inputDir = getDest();
         }
+        if (null == inputDir) {
+            inputDir = getProject().getBaseDir();
+        }
         if (null == destFile) {
             final String message = "Destfile must be set.";
 
@@ -286,6 +1645,32 @@ public class SvnChangeLogTask extends AbstractSvnTask {
 
             throw new BuildException(message);
         }
+        if (!TEXT_PARSER.equals(parser) && !XML_PARSER.equals(parser)) {
+            final String message = "parser must be either " + TEXT_PARSER
+                + " or " + XML_PARSER;
+
+            throw new BuildException(message);
+        }
+        ReportFormat.validate(format);
+        if (parallelism < 1) {
+            final String message = "parallelism must be at least 1";
+
+            throw new BuildException(message);
+        }
+        if (chunkSize < 1) {
+            final String message = "chunksize must be at least 1";
+
+            throw new BuildException(message);
+        }
+        if (compactionThreshold < 0 || compactionThreshold > 1) {
+            final String message =
+                "compactionthreshold must be between 0 and 1";
+
+            throw new BuildException(message);
+        }
+        for (int i = 0, size = repositories.size(); i < size; i++) {
+            repositories.elementAt(i).validate();
+        }
         if (null != usersFile && !usersFile.exists()) {
             final String message = "Cannot find user lookup list "
                 + usersFile.getAbsolutePath();
@@ -313,100 +1698,178 @@ public class SvnChangeLogTask extends AbstractSvnTask {
     }
 
     /**
-     * Filter the specified entries according to an appropriate rule.
-     *
-     * @param entrySet the entry set to filter
-     * @return the filtered entry set
+     * The paths svn log runs on for the nested filesets.
      */
-    private SvnEntry[] filterEntrySet(final SvnEntry[] entrySet) {
-        final Vector results = new Vector();
+    private static final class FilesetTargets {
+        private final String[] paths;
+        /** the selected files if paths covers more, null otherwise */
+        private final PathTrie selection;
+        private final String repositoryPath;
 
-        for (int i = 0; i < entrySet.length; i++) {
-            final SvnEntry svnEntry = entrySet[i];
+        private FilesetTargets(final String[] paths, final PathTrie selection,
+                               final String repositoryPath) {
+            this.paths = paths;
+            this.selection = selection;
+            this.repositoryPath = repositoryPath;
+        }
 
-            if (null != endRevision && !isBeforeEndRevision(svnEntry)) {
-                //Skip revisions that are too late
-                continue;
+        /**
+         * Removes the entries that don't belong to the selected files.
+         */
+        private SvnEntry[] select(final SvnEntry[] entries) {
+            if (null == selection) {
+                return entries;
             }
-            results.addElement(svnEntry);
+            final ArrayList<SvnEntry> l = new ArrayList<SvnEntry>();
+            for (int i = 0; i < entries.length; i++) {
+                if (isSelected(entries[i], selection, repositoryPath)) {
+                    l.add(entries[i]);
+                }
+            }
+            return l.toArray(new SvnEntry[l.size()]);
         }
 
-        final SvnEntry[] resultArray = new SvnEntry[results.size()];
-
-        results.copyInto(resultArray);
-        return resultArray;
-    }
-
-    /**
-     * replace all known author's id's with their maven specified names
-     */
-    private void replaceAuthorIdWithName(final Properties userList,
-                                         final SvnEntry[] entrySet) {
-        for (int i = 0; i < entrySet.length; i++) {
-
-            final SvnEntry entry = entrySet[ i ];
-            if (userList.containsKey(entry.getAuthor())) {
-                entry.setAuthor(userList.getProperty(entry.getAuthor()));
+        /**
+         * Passes on the entries that belong to the selected files.
+         */
+        private SvnEntryListener select(final SvnEntryListener listener) {
+            if (null == selection) {
+                return listener;
             }
+            return new SvnEntryListener() {
+                    public void entryParsed(final SvnEntry entry) {
+                        if (isSelected(entry, selection, repositoryPath)) {
+                            listener.entryParsed(entry);
+                        }
+                    }
+                };
         }
     }
 
     /**
-     * Print changelog to file specified in task.
+     * Writes the entries to the changelog as they arrive, skipping
+     * those after the end revision and replacing known author's ids
+     * with their names.
      *
-     * @param entrySet the entry set to write.
-     * @throws BuildException if there is an error writing changelog.
+     * <p>Only a single entry is held in memory at any time.</p>
      */
-    private void writeChangeLog(final SvnEntry[] entrySet)
-        throws BuildException {
-        FileOutputStream output = null;
+    private class ChangeLogStream implements SvnEntryListener {
+        private final Properties userList;
+        private final EntryWriter serializer =
+            ReportFormat.createEntryWriter(format, title, repoURL);
+        private FileOutputStream output;
+        private PrintWriter writer;
+        /** first problem writing an entry */
+        private Exception failure;
+        /** number of entries written */
+        private long written;
+        /** flight recorder event, null if it is not recorded */
+        private Object event;
 
-        try {
-            output = new FileOutputStream(destFile);
+        ChangeLogStream(final Properties userList) {
+            this.userList = userList;
+        }
 
-            final PrintWriter writer =
-                new PrintWriter(new OutputStreamWriter(output, "UTF-8"));
+        /**
+         * Opens the file specified in task and writes the start of
+         * the changelog.
+         *
+         * @throws BuildException if the file cannot be written
+         */
+        void open() throws BuildException {
+            try {
+                event = SvnFlightRecorder.begin(SvnFlightRecorder.WRITE);
+                output = new FileOutputStream(destFile);
+                writer = new PrintWriter(new OutputStreamWriter(output,
+                                                                "UTF-8"));
+                final long start = getMetrics().startWrite();
+                serializer.startChangeLog(writer);
+                getMetrics().written(0, start);
+            } catch (final IOException ioe) {
+                FileUtils.close(output);
+                throw new BuildException(ioe.toString(), ioe);
+            }
+        }
 
-            final SvnChangeLogWriter serializer = new SvnChangeLogWriter();
+        /**
+         * Filters, maps and writes a single entry.
+         *
+         * <p>Errors are recorded rather than thrown since this is
+         * invoked from the thread that feeds the parser.</p>
+         *
+         * @param entry the entry
+         */
+        public void entryParsed(final SvnEntry entry) {
+            if (null != failure) {
+                return;
+            }
+            if (!isBeforeEndRevision(entry)) {
+                //Skip revisions that are too late
+                return;
+            }
+            if (userList.containsKey(entry.getAuthor())) {
+                entry.setAuthor(userList.getProperty(entry.getAuthor()));
+            }
+            try {
+                final long start = getMetrics().startWrite();
+                serializer.printEntry(writer, entry);
+                getMetrics().written(1, start);
+                written++;
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
 
-            serializer.printChangeLog(writer, entrySet);
-        } catch (final UnsupportedEncodingException uee) {
-            getProject().log(uee.toString(), Project.MSG_ERR);
-        } catch (final IOException ioe) {
-            throw new BuildException(ioe.toString(), ioe);
-        } finally {
+        /**
+         * Completes the changelog.
+         *
+         * @throws BuildException if there is an error writing
+         * changelog.
+         */
+        void close() throws BuildException {
+            try {
+                if (null != failure) {
+                    throw new BuildException(failure.toString(), failure);
+                }
+                final long start = getMetrics().startWrite();
+                serializer.endChangeLog(writer);
+                getMetrics().written(0, start);
+                if (event != null) {
+                    SvnFlightRecorder.commit(event, new Object[] {
+                        format, Long.valueOf(written)});
+                }
+            } catch (final IOException ioe) {
+                throw new BuildException(ioe.toString(), ioe);
+            } finally {
+                FileUtils.close(output);
+            }
+        }
+
+        /**
+         * Removes the incomplete changelog.
+         */
+        void abort() {
+            FileUtils.close(writer);
             FileUtils.close(output);
+            destFile.delete();
         }
     }
 
     private static final String PATTERN = "yyyy-MM-dd";
-    private static final SimpleDateFormat INPUT_DATE
-        = new SimpleDateFormat(PATTERN);
 
     /**
      * Checks whether a given entry is before the given end revision,
      * using revision numbers or date information as appropriate.
      */
-    private boolean isBeforeEndRevision(SvnEntry entry) {
-        if (endRevision.startsWith("{")
-            && endRevision.length() >= 2 + PATTERN.length() ) {
-            try {
-                Date endDate = 
-                    INPUT_DATE.parse(endRevision.substring(1, 
-                                                           PATTERN.length() 
-                                                           + 1));
-                return entry.getDate().before(endDate);
-            } catch (ParseException e) {
-            }
-        } else {
-            try {
-                int endRev = Integer.parseInt(endRevision);
-                int entryRev = Integer.parseInt(entry.getRevision());
-                return endRev >= entryRev;
-            } catch (NumberFormatException e) {
-            } // end of try-catch
+    private boolean isBeforeEndRevision(final SvnEntry entry) {
+        if (endFilterRevision >= 0) {
+            return Integer.parseInt(entry.getRevision())
+                <= endFilterRevision;
+        }
+        if (NO_TIME != endFilterTime && null != entry.getDate()) {
+            return entry.getDate().getTime() < endFilterTime;
         }
-        // failed to parse revision, use a save fallback
+        // no end or failed to parse it, use a save fallback
         return true;
     }
 }
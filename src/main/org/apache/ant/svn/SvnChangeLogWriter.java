@@ -20,26 +20,28 @@ package org.apache.ant.svn;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
-import javax.xml.parsers.DocumentBuilder;
-
-import org.apache.tools.ant.util.DOMElementWriter;
-import org.apache.tools.ant.util.DOMUtils;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import java.util.Collections;
 
 /**
  * Class used to generate an XML changelog.
  */
-public class SvnChangeLogWriter {
-    /** output format for dates written to xml file */
-    private static final SimpleDateFormat OUTPUT_DATE
-        = new SimpleDateFormat("yyyy-MM-dd");
+public class SvnChangeLogWriter implements EntryWriter {
+    private static final String CHANGELOG = "changelog";
+    private static final String REPOSITORY = "repository";
+
+    /**
+     * output format for dates written to xml file, SimpleDateFormat
+     * isn't thread-safe so each writer has its own
+     */
+    private final SimpleDateFormat outputDate =
+        new SimpleDateFormat("yyyy-MM-dd");
     /** output format for times written to xml file */
-    private static final SimpleDateFormat OUTPUT_TIME
-        = new SimpleDateFormat("HH:mm");
-    /** stateless helper for writing the XML document */
-    private static final DOMElementWriter DOM_WRITER = new DOMElementWriter();
+    private final SimpleDateFormat outputTime = new SimpleDateFormat("HH:mm");
+
+    /** writes the elements straight to the output */
+    private StreamingXmlWriter xml;
+    /** whether an entry has been written */
+    private boolean hasEntries;
 
     /**
      * Print out the specified entries.
@@ -49,49 +51,74 @@ public class SvnChangeLogWriter {
      */
     public void printChangeLog(final PrintWriter output,
                                final SvnEntry[] entries) throws IOException {
-        output.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-        Document doc = DOMUtils.newDocument();
-        Element root = doc.createElement("changelog");
-        DOM_WRITER.openElement(root, output, 0, "\t");
-        output.println();
+        startChangeLog(output);
         for (int i = 0; i < entries.length; i++) {
             final SvnEntry entry = entries[i];
 
-            printEntry(output, entry, root);
+            printEntry(output, entry);
         }
-        DOM_WRITER.closeElement(root, output, 0, "\t", entries.length > 0);
+        endChangeLog(output);
+    }
+
+    /**
+     * Print out the start of the changelog.
+     *
+     * <p>Together with {@link #printEntry printEntry} and {@link
+     * #endChangeLog endChangeLog} this allows entries to be written
+     * one at a time without holding all of them in memory.</p>
+     *
+     * @param output writer to which to send output.
+     */
+    public void startChangeLog(final PrintWriter output) throws IOException {
+        xml = new StreamingXmlWriter(output);
+        hasEntries = false;
+        xml.writeDeclaration();
+        xml.startElement(0, CHANGELOG);
+    }
+
+    /**
+     * Print out the end of the changelog and close the writer.
+     *
+     * @param output writer to which to send output.
+     */
+    public void endChangeLog(final PrintWriter output) throws IOException {
+        xml.endElement(0, CHANGELOG, hasEntries);
         output.flush();
         output.close();
     }
 
-
     /**
      * Print out an individual entry in changelog.
      *
+     * <p>Must be invoked after {@link #startChangeLog
+     * startChangeLog}.</p>
+     *
      * @param entry the entry to print
      * @param output writer to which to send output.
      */
-    private void printEntry(final PrintWriter output, final SvnEntry entry,
-                            final Element element) throws IOException {
-        Document doc = element.getOwnerDocument();
-
-        Element ent = doc.createElement("entry");
-        DOMUtils.appendTextElement(ent, "date",
-                                   OUTPUT_DATE.format(entry.getDate()));
-        DOMUtils.appendTextElement(ent, "time",
-                                   OUTPUT_TIME.format(entry.getDate()));
-        DOMUtils.appendCDATAElement(ent, "author", entry.getAuthor());
-        DOMUtils.appendTextElement(ent, "revision", entry.getRevision());
+    public void printEntry(final PrintWriter output, final SvnEntry entry)
+        throws IOException {
+        if (null != entry.getRepository()) {
+            xml.startElement(1, "entry",
+                             Collections.singletonMap(REPOSITORY,
+                                                      entry.getRepository()));
+        } else {
+            xml.startElement(1, "entry");
+        }
+        xml.textElement(2, "date", outputDate.format(entry.getDate()));
+        xml.textElement(2, "time", outputTime.format(entry.getDate()));
+        xml.cdataElement(2, "author", entry.getAuthor());
+        xml.textElement(2, "revision", entry.getRevision());
 
         SvnEntry.Path[] paths = entry.getPaths();
         for (int i = 0; i < paths.length; i++) {
-            Element path = DOMUtils.createChildElement(ent, "path");
-            DOMUtils.appendCDATAElement(path, "name", paths[i].getName());
-            DOMUtils.appendTextElement(path, "action",
-                                       paths[i].getActionDescription());
+            xml.startElement(2, "path");
+            xml.cdataElement(3, "name", paths[i].getName());
+            xml.textElement(3, "action", paths[i].getActionDescription());
+            xml.endElement(2, "path", true);
         }
-        DOMUtils.appendCDATAElement(ent, "message", entry.getMessage());
-        DOM_WRITER.write(ent, output, 1, "\t");
+        xml.cdataElement(2, "message", entry.getMessage());
+        xml.endElement(1, "entry", true);
+        hasEntries = true;
     }
 }
-
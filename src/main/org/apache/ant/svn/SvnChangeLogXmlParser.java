@@ -0,0 +1,244 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.TimeZone;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A class used to parse the output of the svn log --xml command.
+ *
+ * <p>Creates the same entries as {@link SvnChangeLogParser} does for
+ * the plain text output of svn log but doesn't get confused by
+ * commit messages that look like svn log's entry separator.</p>
+ */
+class SvnChangeLogXmlParser extends PullParserOutputStream
+    implements LogParser {
+
+    private static final String LOGENTRY = "logentry";
+    private static final String REVISION = "revision";
+    private static final String AUTHOR = "author";
+    private static final String DATE = "date";
+    private static final String PATH = "path";
+    private static final String ACTION = "action";
+    private static final String COPYFROM_PATH = "copyfrom-path";
+    private static final String COPYFROM_REV = "copyfrom-rev";
+    private static final String MSG = "msg";
+
+    /** what svn log prints if a revision has no author */
+    private static final String NO_AUTHOR = "(no author)";
+
+    /** input format for dates read in from svn log --xml */
+    private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+    /** length of the date part matched by PATTERN */
+    private static final int PATTERN_LENGTH = 19;
+
+    private final SimpleDateFormat inputDate = new SimpleDateFormat(PATTERN);
+    private final String lineSeparator =
+        System.getProperty("line.separator");
+
+    private final ArrayList<SvnEntry> entries = new ArrayList<SvnEntry>();
+    private final SvnEntryListener listener;
+    private final SvnEntryFilter filter;
+    /** number of revisions parsed */
+    private long revisions = 0;
+
+    private String message = "";
+    private Date date = null;
+    private String author = null;
+    private String revision = null;
+    private ArrayList<SvnEntry.Path> paths =
+        new ArrayList<SvnEntry.Path>();
+
+    /**
+     * Creates a parser that collects all entries.
+     */
+    SvnChangeLogXmlParser() {
+        this(null);
+    }
+
+    /**
+     * Creates a parser that passes each entry to a listener as soon
+     * as it has been parsed instead of collecting them.
+     *
+     * @param listener receives the entries, collect them if null
+     */
+    SvnChangeLogXmlParser(final SvnEntryListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * Creates a parser that only creates the entries accepted by a
+     * filter.
+     *
+     * @param listener receives the entries, collect them if null
+     * @param filter selects the entries, accept all if null
+     */
+    SvnChangeLogXmlParser(final SvnEntryListener listener,
+                          final SvnEntryFilter filter) {
+        this.listener = listener;
+        this.filter = filter;
+        inputDate.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Get a list of rcs entries as an array.
+     *
+     * <p>Always empty if the entries have been passed to a
+     * listener.</p>
+     *
+     * @return a list of rcs entries as an array
+     */
+    public SvnEntry[] getEntrySetAsArray() {
+        return entries.toArray(new SvnEntry[entries.size()]);
+    }
+
+    /**
+     * The number of revisions parsed so far.
+     */
+    protected long getEntryCount() {
+        return revisions;
+    }
+
+    /**
+     * Creates an entry for each logentry element.
+     */
+    protected void parse(final XMLStreamReader reader)
+        throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (LOGENTRY.equals(name)) {
+                    reset();
+                    revision = reader.getAttributeValue(null, REVISION);
+                } else if (AUTHOR.equals(name)) {
+                    author = reader.getElementText();
+                } else if (DATE.equals(name)) {
+                    date = parseDate(reader.getElementText());
+                } else if (PATH.equals(name)) {
+                    processPath(reader);
+                } else if (MSG.equals(name)) {
+                    message = toLocalLineEnds(reader.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                       && LOGENTRY.equals(reader.getLocalName())) {
+                saveEntry();
+            }
+        }
+    }
+
+    /**
+     * Process a path element, reader is positioned on the start tag.
+     */
+    private void processPath(final XMLStreamReader reader)
+        throws XMLStreamException {
+        String action = reader.getAttributeValue(null, ACTION);
+        String copyFromPath = reader.getAttributeValue(null, COPYFROM_PATH);
+        String copyFromRev = reader.getAttributeValue(null, COPYFROM_REV);
+        String name = reader.getElementText();
+        if (copyFromPath != null) {
+            // that's how the text output shows up in SvnChangeLogParser
+            name += " (from " + copyFromPath + ":" + copyFromRev + ")";
+        }
+        if (action != null && action.length() > 0) {
+            paths.add(new SvnEntry.Path(name, action.charAt(0)));
+        }
+    }
+
+    /**
+     * Utility method that saves the current entry.
+     */
+    private void saveEntry() {
+        revisions++;
+        final String a = author == null ? NO_AUTHOR : author;
+        if (null != filter && !filter.accepts(a, message, paths)) {
+            reset();
+            return;
+        }
+        SvnEntry entry = new SvnEntry(date, revision, a, message, paths);
+        if (listener != null) {
+            listener.entryParsed(entry);
+        } else {
+            entries.add(entry);
+        }
+        reset();
+    }
+
+    /**
+     * Parse date out from expected format.
+     *
+     * <p>svn log --xml uses UTC with microseconds, the text output
+     * only contains seconds.</p>
+     *
+     * @param d the string holding date
+     * @return the date object or null if unknown date format
+     */
+    private Date parseDate(final String d) {
+        if (d.length() < PATTERN_LENGTH) {
+            return null;
+        }
+        try {
+            return inputDate.parse(d.substring(0, PATTERN_LENGTH));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * svn log's text output would be split into lines that
+     * SvnChangeLogParser joins using the platform's line separator.
+     */
+    private String toLocalLineEnds(final String msg) {
+        if (msg.indexOf('\n') == -1 && msg.indexOf('\r') == -1) {
+            return msg;
+        }
+        StringBuffer sb = new StringBuffer(msg.length());
+        for (int i = 0; i < msg.length(); i++) {
+            char c = msg.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < msg.length() && msg.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                sb.append(lineSeparator);
+            } else if (c == '\n') {
+                sb.append(lineSeparator);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reset all internal attributes.
+     */
+    private void reset() {
+        this.date = null;
+        this.author = null;
+        this.message = "";
+        this.revision = null;
+        this.paths.clear();
+    }
+}
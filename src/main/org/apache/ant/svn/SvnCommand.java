@@ -0,0 +1,112 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import org.apache.tools.ant.types.Commandline;
+
+/**
+ * An svn subcommand and the arguments a single execution of a task
+ * adds to the ones configured by the task's attributes.
+ *
+ * <p>Instances are immutable, a task builds a new one each time it is
+ * executed instead of adding to its configured command line - so a
+ * task instance can be executed any number of times.</p>
+ */
+final class SvnCommand {
+    private static final String[] NONE = new String[0];
+
+    private final String subCommand;
+    private final String revision;
+    private final String[] arguments;
+
+    /**
+     * @param subCommand the subcommand, may contain options separated
+     * by spaces
+     */
+    SvnCommand(final String subCommand) {
+        this(subCommand, null, NONE);
+    }
+
+    private SvnCommand(final String subCommand, final String revision,
+                       final String[] arguments) {
+        this.subCommand = subCommand;
+        this.revision = revision;
+        this.arguments = arguments;
+    }
+
+    /**
+     * A command with an additional argument.
+     */
+    SvnCommand withArgument(final String argument) {
+        return withArguments(new String[] {argument});
+    }
+
+    /**
+     * A command with additional arguments.
+     */
+    SvnCommand withArguments(final String[] more) {
+        if (more.length == 0) {
+            return this;
+        }
+        final String[] args = new String[arguments.length + more.length];
+        System.arraycopy(arguments, 0, args, 0, arguments.length);
+        System.arraycopy(more, 0, args, arguments.length, more.length);
+        return new SvnCommand(subCommand, revision, args);
+    }
+
+    /**
+     * A command for the given revision, it replaces the revision
+     * attribute of the task.
+     */
+    SvnCommand withRevision(final String rev) {
+        return new SvnCommand(subCommand, rev, arguments);
+    }
+
+    String getSubCommand() {
+        return subCommand;
+    }
+
+    /**
+     * Creates the command line of an execution.
+     *
+     * @param configuredRevision the revision attribute of the task,
+     * may be null
+     * @param configured the arguments added to the task by {@link
+     * AbstractSvnTask#addSubCommandArgument(String)
+     * addSubCommandArgument}
+     * @param target the URL to append, may be null
+     * @return a new command line without the global options
+     */
+    Commandline toCommandline(final String configuredRevision,
+                              final String[] configured,
+                              final String target) {
+        final Commandline c = new Commandline();
+        c.createArgument().setLine(subCommand);
+        final String rev = revision != null ? revision : configuredRevision;
+        if (rev != null) {
+            c.createArgument().setValue("--revision");
+            c.createArgument().setValue(rev);
+        }
+        c.addArguments(configured);
+        c.addArguments(arguments);
+        if (target != null) {
+            c.createArgument().setValue(target);
+        }
+        return c;
+    }
+}
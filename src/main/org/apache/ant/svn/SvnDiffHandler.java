@@ -17,168 +17,169 @@
  */
 package org.apache.ant.svn;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.tools.ant.BuildException;
-import org.apache.tools.ant.Project;
-import org.apache.tools.ant.util.DOMElementWriter;
-import org.apache.tools.ant.util.DOMUtils;
 import org.apache.tools.ant.util.FileUtils;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 /**
- * Parses the output of a svn diff command and/or writes an XML report
- * based on such a diff output.
+ * Sets up the parsing of the output of a svn diff command and writes
+ * an XML report based on such a diff output.
  *
  * It produces an XML output representing the list of changes.
  */
 final class SvnDiffHandler {
 
     /**
-     * Token to identify the word file in the rdiff log
+     * Mode that uses svn diff --summarize --xml.
      */
-    private static final String INDEX = "Index: ";
+    static final String SUMMARIZE = "summarize";
+
     /**
-     * Token to identify a deleted file based on the Index line.
+     * Mode that uses svn diff --summarize without --xml for older
+     * clients.
      */
-    private static final String DELETED = " (deleted)";
+    static final String SUMMARIZE_TEXT = "summarize-text";
 
     /**
-     * Token to identify added files based on the diff line.
+     * Mode that parses the full svn diff.
      */
-    private static final String IS_NEW = "\t(revision 0)";
+    static final String FULL = "full";
 
     /**
-     * Token that starts diff line of old revision.
+     * Validates the mode attribute of a diff task.
+     *
+     * @param mode the mode
+     * @exception BuildException if the mode is not supported
      */
-    private static final String DASHES = "--- ";
+    static void validateMode(String mode) throws BuildException {
+        if (!SUMMARIZE.equals(mode) && !SUMMARIZE_TEXT.equals(mode)
+            && !FULL.equals(mode)) {
+            throw new BuildException("mode must be one of " + SUMMARIZE
+                                     + ", " + SUMMARIZE_TEXT + " or "
+                                     + FULL + ".");
+        }
+    }
 
-    /** stateless helper for writing the XML document */
-    private static final DOMElementWriter DOM_WRITER = new DOMElementWriter();
+    /**
+     * Adds the svn diff arguments that make svn produce output
+     * suitable for the given mode.
+     *
+     * @param command the svn diff command
+     * @param mode the mode
+     * @return the command with the arguments added
+     */
+    static SvnCommand addModeArguments(SvnCommand command, String mode) {
+        if (FULL.equals(mode)) {
+            return command.withArgument("--no-diff-deleted");
+        }
+        command = command.withArgument("--summarize");
+        if (SUMMARIZE.equals(mode)) {
+            command = command.withArgument("--xml");
+        }
+        return command;
+    }
 
     /**
-     * Parse the tmpFile and return and array of entries to be written
-     * in the output.
+     * Creates a parser for the output of svn diff in the given mode.
      *
-     * @param tmpFile the File containing the output of the svn rdiff command
-     * @return the entries in the output
-     * @exception BuildException if an error occurs
+     * @param mode the mode
+     * @param baseURL the URL of the first diff target, if any
+     * @return an OutputStream that also implements DiffParser
      */
-    static SvnEntry.Path[] parseDiff(File tmpFile) throws BuildException {
-        // parse the output of the command
-        BufferedReader reader = null;
+    static OutputStream createParser(String mode, String baseURL) {
+        if (SUMMARIZE.equals(mode)) {
+            return new SvnDiffSummaryXmlParser(baseURL);
+        } else if (SUMMARIZE_TEXT.equals(mode)) {
+            return new SvnDiffSummaryParser(baseURL);
+        }
+        return new SvnDiffParser();
+    }
 
+    /**
+     * Waits for the parser to complete and returns the paths it has
+     * found.
+     *
+     * @param parser a parser created by createParser
+     * @return the changed paths
+     * @exception BuildException if the output could not be parsed
+     */
+    static SvnEntry.Path[] getPaths(OutputStream parser)
+        throws BuildException {
         try {
-            reader = new BufferedReader(new FileReader(tmpFile));
-            ArrayList entries = new ArrayList();
-
-            String line = reader.readLine();
-            String name = null;
-            String currDiffLine = null;
-            boolean deleted = false;
-            boolean added = false;
-
-            while (null != line) {
-                if (line.length() > INDEX.length()) {
-                    if (line.startsWith(INDEX)) {
-                        if (name != null) {
-                            SvnEntry.Path p =
-                                new SvnEntry.Path(name, 
-                                                  deleted 
-                                                  ? SvnEntry.Path.DELETED 
-                                                  : (added 
-                                                     ? SvnEntry.Path.ADDED 
-                                                     : SvnEntry.Path.MODIFIED)
-                                                  );
-                            entries.add(p);
-                            deleted = added = false;
-                        }
-
-                        name = line.substring(INDEX.length());
-                        if (line.endsWith(DELETED)) {
-                            name = name.substring(0, name.length() 
-                                                  - DELETED.length());
-                            deleted = true;
-                        }
-
-                        currDiffLine = DASHES + name;
-                    } else if (currDiffLine != null 
-                               && line.startsWith(currDiffLine)
-                               && line.endsWith(IS_NEW)) {
-                        added = true;
-                    }
-                }
-                line = reader.readLine();
-            }
-            if (name != null) {
-                SvnEntry.Path p = new SvnEntry.Path(name, 
-                                                    deleted 
-                                                    ? SvnEntry.Path.DELETED 
-                                                    : (added 
-                                                       ? SvnEntry.Path.ADDED 
-                                                       : SvnEntry.Path.MODIFIED)
-                                                    );
-                entries.add(p);
-            }
-
-            SvnEntry.Path[] array = (SvnEntry.Path[])
-                entries.toArray(new SvnEntry.Path[entries.size()]);
-            return array;
+            parser.close();
         } catch (IOException e) {
-            throw new BuildException("Error in parsing", e);
-        } finally {
-            FileUtils.close(reader);
+            throw new BuildException(e.getMessage(), e);
         }
+        return ((DiffParser) parser).getEntrySetAsArray();
     }
 
     /**
      * Write the diff log.
      *
+     * @param format the format of the report
+     * @param title the title of an HTML report, may be null
+     * @param repoURL the URL the paths are appended to for links in
+     * an HTML report, may be null
      * @param entries a <code>SvnRevisionEntry[]</code> value
      * @exception BuildException if an error occurs
      */
-    static void writeDiff(File destFile, SvnEntry.Path[] entries,
+    static void writeDiff(File destFile, String format, String title,
+                          String repoURL, SvnEntry.Path[] entries,
                           String rootElementName,
                           String tag1Name, String tag1Value,
                           String tag2Name, String tag2Value,
                           String svnURL) throws BuildException {
+        Object event = SvnFlightRecorder.begin(SvnFlightRecorder.WRITE);
         FileOutputStream output = null;
         try {
             output = new FileOutputStream(destFile);
             PrintWriter writer = new PrintWriter(
                                      new OutputStreamWriter(output, "UTF-8"));
-            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            Document doc = DOMUtils.newDocument();
-            Element root = doc.createElement(rootElementName);
+            Map<String, String> attributes = new HashMap<String, String>();
             if (tag1Name != null && tag1Value != null) {
-                root.setAttribute(tag1Name, tag1Value);
+                attributes.put(tag1Name, tag1Value);
             }
             if (tag2Name != null && tag2Value != null) {
-                root.setAttribute(tag2Name, tag2Value);
+                attributes.put(tag2Name, tag2Value);
             }
 
             if (svnURL != null) {
-                root.setAttribute("svnurl", svnURL);
+                attributes.put("svnurl", svnURL);
+            }
+            if (ReportFormat.HTML.equals(format)) {
+                new HtmlWriter(title, repoURL).printDiff(writer, tag1Value,
+                                                         tag2Value, entries);
+                writer.flush();
+                writer.close();
+                commit(event, format, entries);
+                return;
             }
-            DOM_WRITER.openElement(root, writer, 0, "\t");
-            writer.println();
+            if (!ReportFormat.XML.equals(format)) {
+                ReportFormat.writePaths(writer, format, attributes, entries);
+                writer.flush();
+                writer.close();
+                commit(event, format, entries);
+                return;
+            }
+            StreamingXmlWriter xml = new StreamingXmlWriter(writer);
+            xml.writeDeclaration();
+            xml.startElement(0, rootElementName, attributes);
             for (int i = 0, c = entries.length; i < c; i++) {
-                writeRevisionEntry(doc, writer, entries[i]);
+                writeRevisionEntry(xml, entries[i]);
             }
-            DOM_WRITER.closeElement(root, writer, 0, "\t", true);
+            xml.endElement(0, rootElementName, true);
             writer.flush();
             writer.close();
+            commit(event, format, entries);
         } catch (UnsupportedEncodingException uee) {
             throw new BuildException(uee);
         } catch (IOException ioe) {
@@ -188,21 +189,30 @@ final class SvnDiffHandler {
         }
     }
 
+    /**
+     * Commits the flight recorder event of a report.
+     */
+    private static void commit(Object event, String format,
+                               SvnEntry.Path[] entries) {
+        if (event != null) {
+            SvnFlightRecorder.commit(event, new Object[] {
+                format, Long.valueOf(entries.length)});
+        }
+    }
+
     /**
      * Write a single entry to the given writer.
      *
-     * @param doc Document used to create elements.
-     * @param writer a <code>PrintWriter</code> value
+     * @param xml the writer
      * @param entry a <code>SvnRevisionEntry</code> value
      */
-    private static void writeRevisionEntry(Document doc,
-                                           PrintWriter writer,
+    private static void writeRevisionEntry(StreamingXmlWriter xml,
                                            SvnEntry.Path entry)
         throws IOException {
-        Element e = doc.createElement("path");
-        DOMUtils.appendCDATAElement(e, "name", entry.getName());
-        DOMUtils.appendTextElement(e, "action", entry.getActionDescription());
-        DOM_WRITER.write(e, writer, 1, "\t");
+        xml.startElement(1, "path");
+        xml.cdataElement(2, "name", entry.getName());
+        xml.textElement(2, "action", entry.getActionDescription());
+        xml.endElement(1, "path", true);
     }
 
 }
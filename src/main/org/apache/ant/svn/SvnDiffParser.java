@@ -0,0 +1,155 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A class used to parse the output of the svn diff command while it
+ * is being written by the svn process.
+ *
+ * <p>Only the names of the changed paths and whether they have been
+ * added, modified or deleted are retained, the diff itself is
+ * discarded line by line.</p>
+ */
+class SvnDiffParser extends LineOrientedOutputStream implements DiffParser {
+
+    /**
+     * Token to identify the word file in the rdiff log
+     */
+    private static final String INDEX = "Index: ";
+    /**
+     * Token to identify a deleted file based on the Index line.
+     */
+    private static final String DELETED = " (deleted)";
+
+    /**
+     * Token to identify added files based on the diff line.
+     */
+    private static final String IS_NEW = "\t(revision 0)";
+
+    /**
+     * Token that starts diff line of old revision.
+     */
+    private static final String DASHES = "--- ";
+
+    /** INDEX as bytes, svn's keywords are ASCII. */
+    private static final byte[] INDEX_BYTES = ascii(INDEX);
+
+    /** DASHES as bytes. */
+    private static final byte[] DASHES_BYTES = ascii(DASHES);
+
+    private final ArrayList<SvnEntry.Path> entries =
+        new ArrayList<SvnEntry.Path>();
+
+    private String name = null;
+    private String currDiffLine = null;
+    private boolean deleted = false;
+    private boolean added = false;
+
+    /**
+     * Get the paths found so far as an array.
+     *
+     * @return the changed paths
+     */
+    public SvnEntry.Path[] getEntrySetAsArray() {
+        ArrayList<SvnEntry.Path> l = new ArrayList<SvnEntry.Path>(entries);
+        if (name != null) {
+            // the last section of the diff has no successor that
+            // would have saved it
+            l.add(createPath());
+        }
+        return l.toArray(new SvnEntry.Path[l.size()]);
+    }
+
+    /**
+     * The number of paths parsed so far.
+     */
+    protected long getEntryCount() {
+        return entries.size() + (name != null ? 1 : 0);
+    }
+
+    /**
+     * Only decodes the lines that may be of interest, the content of
+     * the diff is skipped.
+     *
+     * @param buf holds the line
+     * @param off the offset into the array where the line starts
+     * @param len the length of the line
+     */
+    protected void processLine(final byte[] buf, final int off,
+                               final int len) throws IOException {
+        if (len > INDEX_BYTES.length
+            && (startsWith(buf, off, len, INDEX_BYTES)
+                || (currDiffLine != null
+                    && startsWith(buf, off, len, DASHES_BYTES)))) {
+            super.processLine(buf, off, len);
+        }
+    }
+
+    /**
+     * Receive notification about the process writing
+     * to standard output.
+     * @param line the line to process
+     */
+    protected void processLine(final String line) {
+        if (line.length() > INDEX.length()) {
+            if (line.startsWith(INDEX)) {
+                savePath();
+
+                name = line.substring(INDEX.length());
+                if (line.endsWith(DELETED)) {
+                    name = name.substring(0, name.length()
+                                          - DELETED.length());
+                    deleted = true;
+                }
+
+                currDiffLine = DASHES + name;
+            } else if (currDiffLine != null
+                       && line.startsWith(currDiffLine)
+                       && line.endsWith(IS_NEW)) {
+                added = true;
+            }
+        }
+    }
+
+    /**
+     * Saves the path of the last Index: line seen, if any.
+     */
+    private void savePath() {
+        if (name != null) {
+            entries.add(createPath());
+            name = null;
+            currDiffLine = null;
+            deleted = added = false;
+        }
+    }
+
+    /**
+     * Creates the path for the current Index: section.
+     */
+    private SvnEntry.Path createPath() {
+        return new SvnEntry.Path(name,
+                                 deleted
+                                 ? SvnEntry.Path.DELETED
+                                 : (added
+                                    ? SvnEntry.Path.ADDED
+                                    : SvnEntry.Path.MODIFIED));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+
+/**
+ * A class used to parse the output of the svn diff --summarize
+ * command.
+ *
+ * <p>Each line starts with a column holding the status of the item
+ * itself and one holding the status of its properties followed by
+ * the path.  Paths where only properties have changed are
+ * ignored.</p>
+ */
+class SvnDiffSummaryParser extends LineOrientedOutputStream
+    implements DiffParser {
+
+    private final ArrayList<SvnEntry.Path> entries =
+        new ArrayList<SvnEntry.Path>();
+
+    /** prefix to strip from reported URLs, may be null */
+    private final String baseURL;
+
+    /**
+     * @param baseURL URL of the first diff target, reported URLs will
+     * be made relative to it.  May be null.
+     */
+    SvnDiffSummaryParser(final String baseURL) {
+        this.baseURL = baseURL;
+    }
+
+    /**
+     * Get the paths found so far as an array.
+     *
+     * @return the changed paths
+     */
+    public SvnEntry.Path[] getEntrySetAsArray() {
+        return entries.toArray(new SvnEntry.Path[entries.size()]);
+    }
+
+    /**
+     * The number of paths parsed so far.
+     */
+    protected long getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Receive notification about the process writing
+     * to standard output.
+     * @param line the line to process
+     */
+    protected void processLine(final String line) {
+        if (line.length() < 3) {
+            return;
+        }
+        char action = line.charAt(0);
+        if (action != 'A' && action != 'M' && action != 'D') {
+            // property change only or not a status line at all
+            return;
+        }
+        int start = 2;
+        while (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+        }
+        if (start < line.length()) {
+            entries.add(new SvnEntry.Path(relativize(line.substring(start),
+                                                     baseURL),
+                                          action));
+        }
+    }
+
+    /**
+     * Makes a path reported by svn diff --summarize look like the
+     * path of an "Index:" line of the full svn diff.
+     *
+     * <p>When diffing URLs svn reports the URL of the changed item
+     * in its URI-encoded form, strip the URL of the first diff
+     * target and decode it.  Working copy paths are returned
+     * unchanged.</p>
+     *
+     * @param path the path reported by svn
+     * @param baseURL URL of the first diff target, may be null
+     * @return the path relative to baseURL
+     */
+    static String relativize(final String path, final String baseURL) {
+        if (baseURL == null || path.indexOf("://") == -1) {
+            return path;
+        }
+        String base = baseURL.endsWith("/") ? baseURL : baseURL + "/";
+        String rel = path;
+        if (path.startsWith(base)) {
+            rel = path.substring(base.length());
+        } else if (path.equals(baseURL)) {
+            rel = "";
+        }
+        return decode(rel);
+    }
+
+    /**
+     * Decodes %XX escapes of a URI-encoded UTF-8 string, leaves
+     * everything else alone.
+     */
+    private static String decode(final String s) {
+        if (s.indexOf('%') == -1) {
+            return s;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length());
+        try {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '%' && i + 2 < s.length()) {
+                    int hi = Character.digit(s.charAt(i + 1), 16);
+                    int lo = Character.digit(s.charAt(i + 2), 16);
+                    if (hi >= 0 && lo >= 0) {
+                        bytes.write(hi * 16 + lo);
+                        i += 2;
+                        continue;
+                    }
+                }
+                byte[] b = String.valueOf(c).getBytes("UTF-8");
+                bytes.write(b, 0, b.length);
+            }
+            return bytes.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            return s;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.util.ArrayList;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A class used to parse the output of the svn diff --summarize --xml
+ * command.
+ *
+ * <p>Paths where only properties have changed are ignored, just
+ * like added or modified directories - changes to the files inside
+ * them are reported individually.  Deleted directories are reported
+ * since svn doesn't list their content.</p>
+ */
+class SvnDiffSummaryXmlParser extends PullParserOutputStream
+    implements DiffParser {
+
+    private static final String PATH = "path";
+    private static final String KIND = "kind";
+    private static final String ITEM = "item";
+    private static final String DIR = "dir";
+
+    private final ArrayList<SvnEntry.Path> entries =
+        new ArrayList<SvnEntry.Path>();
+
+    /** prefix to strip from reported URLs, may be null */
+    private final String baseURL;
+
+    /**
+     * @param baseURL URL of the first diff target, reported URLs will
+     * be made relative to it.  May be null.
+     */
+    SvnDiffSummaryXmlParser(final String baseURL) {
+        this.baseURL = baseURL;
+    }
+
+    /**
+     * Get the paths found so far as an array.
+     *
+     * @return the changed paths
+     */
+    public SvnEntry.Path[] getEntrySetAsArray() {
+        synchronized (entries) {
+            return entries.toArray(new SvnEntry.Path[entries.size()]);
+        }
+    }
+
+    /**
+     * The number of paths parsed so far.
+     */
+    protected long getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Collects the path elements.
+     */
+    protected void parse(final XMLStreamReader reader)
+        throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT
+                && PATH.equals(reader.getLocalName())) {
+                String kind = reader.getAttributeValue(null, KIND);
+                String item = reader.getAttributeValue(null, ITEM);
+                String name = reader.getElementText();
+                char action = toAction(item);
+                if (action != 0 && (!DIR.equals(kind) || action == 'D')) {
+                    SvnEntry.Path p = new SvnEntry.Path(SvnDiffSummaryParser
+                                                        .relativize(name,
+                                                                    baseURL),
+                                                        action);
+                    synchronized (entries) {
+                        entries.add(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Translates the item attribute into an action character or 0 if
+     * the item itself has not been changed.
+     */
+    private static char toAction(final String item) {
+        if ("added".equals(item)) {
+            return 'A';
+        } else if ("modified".equals(item)) {
+            return 'M';
+        } else if ("deleted".equals(item)) {
+            return 'D';
+        }
+        return 0;
+    }
+}
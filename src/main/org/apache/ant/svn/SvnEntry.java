@@ -27,7 +27,8 @@ public class SvnEntry {
     private final String revision;
     private String author;
     private final String message;
-    private final ArrayList paths = new ArrayList();
+    private final ArrayList<Path> paths = new ArrayList<Path>();
+    private String repository;
 
     /**
      * Creates a new instance of a SvnEntry
@@ -37,7 +38,7 @@ public class SvnEntry {
      */
     public SvnEntry(final Date date, final String revision, 
                     final String author, final String message) {
-        this(date, revision, author, message, Collections.EMPTY_LIST);
+        this(date, revision, author, message, Collections.<Path>emptyList());
     }
 
     /**
@@ -48,7 +49,7 @@ public class SvnEntry {
      */
     public SvnEntry(final Date date, final String revision, 
                     final String author, final String message,
-                    final Collection paths) {
+                    final Collection<Path> paths) {
         this.date = date;
         this.revision = revision;
         this.author = author;
@@ -105,12 +106,28 @@ public class SvnEntry {
         return message;
     }
 
+    /**
+     * Sets the name of the repository the SvnEntry belongs to
+     * @param repository the name
+     */
+    public void setRepository(final String repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Gets the name of the repository the SvnEntry belongs to
+     * @return the name or null if the log spans a single repository
+     */
+    public String getRepository() {
+        return repository;
+    }
+
     /**
      * Gets the paths in this SvnEntry
      * @return the files
      */
     public Path[] getPaths() {
-        return (Path[]) paths.toArray(new Path[paths.size()]);
+        return paths.toArray(new Path[paths.size()]);
     }
 
     public static class Path {
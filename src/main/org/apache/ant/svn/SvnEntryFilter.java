@@ -0,0 +1,49 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.util.Collection;
+
+/**
+ * Decides which entries make it into a changelog.
+ *
+ * <p>Invoked by the parsers before an entry gets created, so the
+ * entry's values are passed individually.</p>
+ */
+interface SvnEntryFilter {
+
+    /**
+     * Whether entries by the given author may be accepted at all.
+     *
+     * <p>Allows parsers to skip the remainder of an entry as soon as
+     * they know its author.</p>
+     *
+     * @param author the author as reported by svn
+     */
+    boolean acceptsAuthor(String author);
+
+    /**
+     * Whether an entry is accepted.
+     *
+     * @param author the author as reported by svn
+     * @param message the commit message
+     * @param paths the changed paths
+     */
+    boolean accepts(String author, CharSequence message,
+                    Collection<SvnEntry.Path> paths);
+}
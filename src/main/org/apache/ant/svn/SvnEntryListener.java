@@ -0,0 +1,37 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+/**
+ * Receives the entries of svn log's output one at a time as soon as
+ * they have been parsed.
+ */
+interface SvnEntryListener {
+
+    /**
+     * Invoked for each entry once it has been parsed completely.
+     *
+     * <p>May be invoked from a different thread than the one running
+     * svn, but never concurrently.  Implementations must not throw
+     * exceptions as this would stop the stream that feeds the
+     * parser.</p>
+     *
+     * @param entry the entry
+     */
+    void entryParsed(SvnEntry entry);
+}
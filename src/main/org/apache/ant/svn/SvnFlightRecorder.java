@@ -0,0 +1,259 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for svn processes, parsers and report
+ * writers.
+ *
+ * <p>The events are defined at runtime using
+ * <code>jdk.jfr.EventFactory</code> and only accessed via
+ * reflection, so this antlib still runs on Java versions without
+ * JFR.  There the events simply never get enabled.</p>
+ *
+ * <p>Events are coarse grained - one per process, parser or report
+ * - and {@link #begin begin} only creates an event if a recording
+ * has enabled its type, so the costs are negligible if JFR is not
+ * recording.</p>
+ *
+ * <p>The settings template <code>src/etc/svn.jfc</code> enables all
+ * events defined here.</p>
+ */
+final class SvnFlightRecorder {
+
+    /** svn process, fields: command, exitCode, stdoutBytes, stderrBytes */
+    static final Kind COMMAND =
+        new Kind("Command", "svn Command", "An svn process",
+                 new Object[] {
+                     String.class, "command", "Command", null,
+                     int.class, "exitCode", "Exit Code", null,
+                     long.class, "stdoutBytes", "Standard Output", "BYTES",
+                     long.class, "stderrBytes", "Standard Error", "BYTES",
+                 });
+
+    /** parsed svn output, fields: parser, entries, bytes */
+    static final Kind PARSE =
+        new Kind("Parse", "svn Output Parsed",
+                 "Output of an svn process that has been parsed",
+                 new Object[] {
+                     String.class, "parser", "Parser", null,
+                     long.class, "entries", "Entries", null,
+                     long.class, "bytes", "Bytes Consumed", "BYTES",
+                 });
+
+    /** report, fields: format, entries */
+    static final Kind WRITE =
+        new Kind("Write", "svn Report Written",
+                 "A changelog or diff report", new Object[] {
+                     String.class, "format", "Format", null,
+                     long.class, "entries", "Entries Written", null,
+                 });
+
+    private static final String PREFIX = "org.apache.ant.svn.";
+
+    private static final String CATEGORY = "Apache Ant";
+
+    private SvnFlightRecorder() {
+    }
+
+    /**
+     * Starts an event if its type is enabled.
+     *
+     * @param kind the type of event
+     * @return the event or null if it is not going to be recorded
+     */
+    static Object begin(final Kind kind) {
+        if (!kind.isEnabled()) {
+            return null;
+        }
+        try {
+            final Object event = Jfr.newEvent.invoke(kind.factory,
+                                                     (Object[]) null);
+            Jfr.begin.invoke(event, (Object[]) null);
+            return event;
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends and commits an event.
+     *
+     * @param event the event returned by {@link #begin begin}, may
+     * be null
+     * @param values the values of the event's fields in the order
+     * they have been defined in
+     */
+    static void commit(final Object event, final Object[] values) {
+        if (null == event) {
+            return;
+        }
+        try {
+            Jfr.end.invoke(event, (Object[]) null);
+            for (int i = 0; i < values.length; i++) {
+                Jfr.set.invoke(event, new Object[] {Integer.valueOf(i),
+                                                    values[i]});
+            }
+            Jfr.commit.invoke(event, (Object[]) null);
+        } catch (final Exception e) {
+            // JFR has been shut down, nothing to report to
+        }
+    }
+
+    /**
+     * A type of event.
+     */
+    static final class Kind {
+        /** EventFactory, null if JFR is not available */
+        private final Object factory;
+        private final Object eventType;
+
+        /**
+         * @param name the name of the type without the package
+         * @param label human readable name
+         * @param description description of the type
+         * @param fields groups of type, name, label and content type
+         * (null or the value of a DataAmount annotation)
+         */
+        private Kind(final String name, final String label,
+                     final String description, final Object[] fields) {
+            Object f = null;
+            Object t = null;
+            if (Jfr.AVAILABLE) {
+                try {
+                    List<Object> annotations = new ArrayList<Object>();
+                    annotations.add(Jfr.annotation(Jfr.name, PREFIX + name));
+                    annotations.add(Jfr.annotation(Jfr.label, label));
+                    annotations.add(Jfr.annotation(Jfr.description,
+                                                   description));
+                    annotations.add(Jfr.annotation(Jfr.category,
+                                                   new String[] {CATEGORY}));
+                    List<Object> descriptors = new ArrayList<Object>();
+                    for (int i = 0; i < fields.length; i += 4) {
+                        List<Object> fieldAnnotations = new ArrayList<Object>();
+                        fieldAnnotations.add(Jfr.annotation(Jfr.label,
+                                                            fields[i + 2]));
+                        if (null != fields[i + 3]) {
+                            fieldAnnotations
+                                .add(Jfr.annotation(Jfr.dataAmount,
+                                                    fields[i + 3]));
+                        }
+                        descriptors.add(Jfr.valueDescriptor
+                                        .newInstance(new Object[] {
+                                            fields[i], fields[i + 1],
+                                            fieldAnnotations}));
+                    }
+                    f = Jfr.create.invoke(null, new Object[] {annotations,
+                                                              descriptors});
+                    t = Jfr.getEventType.invoke(f, (Object[]) null);
+                } catch (final Exception e) {
+                    f = t = null;
+                }
+            }
+            factory = f;
+            eventType = t;
+        }
+
+        /**
+         * Whether a recording is running that has enabled this type.
+         */
+        boolean isEnabled() {
+            if (null == eventType) {
+                return false;
+            }
+            try {
+                return ((Boolean) Jfr.isEnabled.invoke(eventType,
+                                                       (Object[]) null))
+                    .booleanValue();
+            } catch (final Exception e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The parts of the jdk.jfr API used by this class.
+     */
+    private static final class Jfr {
+        static final boolean AVAILABLE;
+        static Class<?> name;
+        static Class<?> label;
+        static Class<?> description;
+        static Class<?> category;
+        static Class<?> dataAmount;
+        static Constructor<?> annotationElement;
+        static Constructor<?> valueDescriptor;
+        static Method create;
+        static Method getEventType;
+        static Method newEvent;
+        static Method isEnabled;
+        static Method begin;
+        static Method end;
+        static Method set;
+        static Method commit;
+
+        static {
+            boolean available = false;
+            try {
+                name = Class.forName("jdk.jfr.Name");
+                label = Class.forName("jdk.jfr.Label");
+                description = Class.forName("jdk.jfr.Description");
+                category = Class.forName("jdk.jfr.Category");
+                dataAmount = Class.forName("jdk.jfr.DataAmount");
+                annotationElement =
+                    Class.forName("jdk.jfr.AnnotationElement")
+                    .getConstructor(new Class<?>[] {Class.class, Object.class});
+                valueDescriptor =
+                    Class.forName("jdk.jfr.ValueDescriptor")
+                    .getConstructor(new Class<?>[] {Class.class, String.class,
+                                                 List.class});
+                final Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+                create = factory.getMethod("create",
+                                           new Class<?>[] {List.class,
+                                                        List.class});
+                getEventType = factory.getMethod("getEventType",
+                                                 new Class<?>[0]);
+                newEvent = factory.getMethod("newEvent", new Class<?>[0]);
+                isEnabled = Class.forName("jdk.jfr.EventType")
+                    .getMethod("isEnabled", new Class<?>[0]);
+                final Class<?> event = Class.forName("jdk.jfr.Event");
+                begin = event.getMethod("begin", new Class<?>[0]);
+                end = event.getMethod("end", new Class<?>[0]);
+                set = event.getMethod("set", new Class<?>[] {int.class,
+                                                          Object.class});
+                commit = event.getMethod("commit", new Class<?>[0]);
+                available = true;
+            } catch (final Exception e) {
+                // not running on a JVM with JFR
+            } catch (final LinkageError e) {
+                // not running on a JVM with JFR
+            }
+            AVAILABLE = available;
+        }
+
+        static Object annotation(final Class<?> type, final Object value)
+            throws Exception {
+            return annotationElement.newInstance(new Object[] {type, value});
+        }
+    }
+}
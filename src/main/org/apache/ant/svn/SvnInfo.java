@@ -0,0 +1,140 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.util.Properties;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.LogOutputStream;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
+import org.apache.tools.ant.types.Commandline;
+
+/**
+ * Runs svn info on a single target and provides access to the
+ * information printed.
+ */
+final class SvnInfo {
+
+    private static final String UUID = "Repository UUID";
+    private static final String URL = "URL";
+    private static final String ROOT = "Repository Root";
+    private static final String REVISION = "Revision";
+    private static final String LAST_CHANGED_REVISION = "Last Changed Rev";
+
+    private final Properties values;
+
+    private SvnInfo(final Properties values) {
+        this.values = values;
+    }
+
+    /**
+     * Runs svn info.
+     *
+     * @param task the task to run svn with, provides working
+     * directory and error handling
+     * @param target working copy path or URL, relative to the task's
+     * dest directory
+     * @param revision operative revision, may be null
+     * @return the information svn has printed, empty if svn failed
+     * and the task didn't fail the build
+     */
+    static SvnInfo get(final AbstractSvnTask task, final String target,
+                       final String revision) {
+        final Parser parser = new Parser();
+        final Commandline c = new Commandline();
+        c.setExecutable(task.getExecutable());
+        c.createArgument().setValue("info");
+        if (revision != null) {
+            c.createArgument().setValue("--revision");
+            c.createArgument().setValue(revision);
+        }
+        c.createArgument().setValue(target);
+        task.runCommand(c,
+                        new PumpStreamHandler(parser,
+                                              new LogOutputStream(task,
+                                                                  Project
+                                                                  .MSG_ERR)));
+        return new SvnInfo(parser.values);
+    }
+
+    /**
+     * The UUID of the repository or null if unknown.
+     */
+    String getUUID() {
+        return values.getProperty(UUID);
+    }
+
+    /**
+     * The URL of the target or null if unknown.
+     */
+    String getURL() {
+        return values.getProperty(URL);
+    }
+
+    /**
+     * The URL of the repository root or null if unknown.
+     */
+    String getRepositoryRoot() {
+        return values.getProperty(ROOT);
+    }
+
+    /**
+     * The revision of the target or -1 if unknown.
+     */
+    int getRevision() {
+        return getNumber(REVISION);
+    }
+
+    /**
+     * The revision in which the target has last been changed or -1
+     * if unknown.
+     */
+    int getLastChangedRevision() {
+        return getNumber(LAST_CHANGED_REVISION);
+    }
+
+    private int getNumber(final String key) {
+        final String v = values.getProperty(key);
+        if (v != null) {
+            try {
+                return Integer.parseInt(v);
+            } catch (final NumberFormatException e) {
+                // fall through
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the "key: value" lines of svn info's output, only the
+     * first target's values are kept.
+     */
+    private static class Parser extends LineOrientedOutputStream {
+        private final Properties values = new Properties();
+
+        protected void processLine(final String line) {
+            final int colon = line.indexOf(": ");
+            if (colon > 0) {
+                final String key = line.substring(0, colon);
+                if (!values.containsKey(key)) {
+                    values.setProperty(key, line.substring(colon + 2).trim());
+                }
+            }
+        }
+    }
+}
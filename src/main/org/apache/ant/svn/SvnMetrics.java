@@ -0,0 +1,356 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Collects timings and byte counts of a single execution of a task.
+ *
+ * <p>All svn processes started by the task are measured by wrapping
+ * the stream handler passed to {@link AbstractSvnTask#runCommand
+ * runCommand}, the report writers add the entries they have written.
+ * Processes may run concurrently, so all counters are atomic.</p>
+ */
+final class SvnMetrics {
+
+    private static final String[] NAMES = {
+        "commands", "start.ms", "svn.ms", "stdout.bytes", "stderr.bytes",
+        "lines", "entries", "parse.ms", "write.ms", "cached",
+    };
+
+    private static final int COMMANDS = 0;
+    private static final int START = 1;
+    private static final int SVN = 2;
+    private static final int STDOUT = 3;
+    private static final int STDERR = 4;
+    private static final int LINES = 5;
+    private static final int ENTRIES = 6;
+    private static final int PARSE = 7;
+    private static final int WRITE = 8;
+    private static final int CACHED = 9;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Time the current thread has spent writing the report, used to
+     * tell parsing from writing when entries are written while svn's
+     * output is parsed.
+     */
+    private static final ThreadLocal<long[]> WRITE_NANOS =
+        new ThreadLocal<long[]>() {
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+    private final AtomicLong[] values = new AtomicLong[NAMES.length];
+    private final long created = System.currentTimeMillis();
+
+    SvnMetrics() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Wraps the stream handler of a process that is about to be
+     * started.
+     *
+     * @param handler the handler that consumes the process' output
+     * @return a handler that measures the process and delegates to
+     * handler
+     */
+    Monitor monitor(final ExecuteStreamHandler handler) {
+        return new Monitor(handler);
+    }
+
+    /**
+     * Records a command that has been answered from the response
+     * cache without running svn.
+     */
+    void cached() {
+        values[CACHED].incrementAndGet();
+    }
+
+    /**
+     * Starts timing the report writer.
+     *
+     * @return the value to pass to {@link #written written}
+     */
+    long startWrite() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records entries written to the report.
+     *
+     * @param entries the number of entries or paths written
+     * @param start the value returned by {@link #startWrite
+     * startWrite}
+     */
+    void written(final int entries, final long start) {
+        final long nanos = System.nanoTime() - start;
+        WRITE_NANOS.get()[0] += nanos;
+        values[WRITE].addAndGet(nanos);
+        values[ENTRIES].addAndGet(entries);
+    }
+
+    /**
+     * Sets a property for each of the values, using the given
+     * prefix.  Properties that have been set before are not
+     * overwritten.
+     *
+     * @param project the project to set the properties in
+     * @param prefix prefix of the property names, a dot is added
+     */
+    void setProperties(final Project project, final String prefix) {
+        for (int i = 0; i < NAMES.length; i++) {
+            project.setNewProperty(prefix + "." + NAMES[i],
+                                   String.valueOf(get(i)));
+        }
+    }
+
+    /**
+     * Appends the values as a JSON object on a line of its own.
+     *
+     * @param file the file to append to
+     * @param task the name of the task
+     * @param target the name of the target, may be null
+     */
+    void append(final File file, final String task, final String target)
+        throws IOException {
+        final SimpleDateFormat format =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file, true),
+                                            "UTF-8");
+            writer.write("{\"task\":");
+            JsonLinesWriter.writeString(writer, task);
+            writer.write(",\"target\":");
+            JsonLinesWriter.writeString(writer, target);
+            writer.write(",\"time\":");
+            JsonLinesWriter.writeString(writer,
+                                        format.format(new Date(created)));
+            for (int i = 0; i < NAMES.length; i++) {
+                writer.write(',');
+                JsonLinesWriter.writeString(writer, NAMES[i]);
+                writer.write(':');
+                writer.write(String.valueOf(get(i)));
+            }
+            writer.write("}\n");
+        } finally {
+            FileUtils.close(writer);
+        }
+    }
+
+    /**
+     * A value, durations are converted to milliseconds.
+     */
+    private long get(final int index) {
+        final long value = values[index].get();
+        return NAMES[index].endsWith(".ms") ? value / NANOS_PER_MILLI
+            : value;
+    }
+
+    /**
+     * Measures a single process.
+     *
+     * <p>Execute hands the process' streams to the handler once the
+     * process has been started, the time until then is the start
+     * latency.</p>
+     */
+    final class Monitor implements ExecuteStreamHandler {
+        private final ExecuteStreamHandler handler;
+        private final AtomicLong stdout = new AtomicLong();
+        private final AtomicLong stderr = new AtomicLong();
+        private long started;
+        private boolean running;
+
+        private Monitor(final ExecuteStreamHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Must be invoked right before the process is executed.
+         */
+        void started() {
+            started = System.nanoTime();
+            values[COMMANDS].incrementAndGet();
+        }
+
+        /**
+         * Must be invoked once the process has finished.
+         */
+        void finished() {
+            values[SVN].addAndGet(System.nanoTime() - started);
+        }
+
+        public void setProcessInputStream(final OutputStream os)
+            throws IOException {
+            running();
+            handler.setProcessInputStream(os);
+        }
+
+        public void setProcessOutputStream(final InputStream is)
+            throws IOException {
+            running();
+            handler.setProcessOutputStream(new CountingInputStream(is,
+                                                                   STDOUT,
+                                                                   stdout,
+                                                                   true));
+        }
+
+        public void setProcessErrorStream(final InputStream is)
+            throws IOException {
+            running();
+            handler.setProcessErrorStream(new CountingInputStream(is,
+                                                                  STDERR,
+                                                                  stderr,
+                                                                  false));
+        }
+
+        /**
+         * Bytes the process has written to its standard output.
+         */
+        long getStdoutBytes() {
+            return stdout.get();
+        }
+
+        /**
+         * Bytes the process has written to its standard error.
+         */
+        long getStderrBytes() {
+            return stderr.get();
+        }
+
+        public void start() throws IOException {
+            handler.start();
+        }
+
+        public void stop() {
+            handler.stop();
+        }
+
+        private void running() {
+            if (!running) {
+                running = true;
+                values[START].addAndGet(System.nanoTime() - started);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from a process.
+     *
+     * <p>For standard output it also counts the lines and measures
+     * the time the reading thread spends between two reads - that is
+     * the time it takes to hand the data to the parser - minus the
+     * time it spends writing the report meanwhile.</p>
+     */
+    private final class CountingInputStream extends FilterInputStream {
+        private final int bytes;
+        /** bytes read by this process */
+        private final AtomicLong processBytes;
+        private final boolean consumed;
+        /** when the last read returned, 0 if there hasn't been one */
+        private long returned;
+        /** the thread's write time when the last read returned */
+        private long writeNanos;
+
+        private CountingInputStream(final InputStream in, final int bytes,
+                                    final AtomicLong processBytes,
+                                    final boolean consumed) {
+            super(in);
+            this.bytes = bytes;
+            this.processBytes = processBytes;
+            this.consumed = consumed;
+        }
+
+        public int read() throws IOException {
+            reading();
+            final int c = super.read();
+            if (c >= 0) {
+                count(c == '\n' ? 1 : 0, 1);
+            }
+            return c;
+        }
+
+        public int read(final byte[] b, final int off, final int len)
+            throws IOException {
+            reading();
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                int lines = 0;
+                for (int i = off; i < off + n; i++) {
+                    if (b[i] == '\n') {
+                        lines++;
+                    }
+                }
+                count(lines, n);
+            }
+            return n;
+        }
+
+        public void close() throws IOException {
+            reading();
+            super.close();
+        }
+
+        private void count(final int lines, final int n) {
+            values[bytes].addAndGet(n);
+            processBytes.addAndGet(n);
+            if (consumed) {
+                values[LINES].addAndGet(lines);
+                returned = System.nanoTime();
+                writeNanos = WRITE_NANOS.get()[0];
+            }
+        }
+
+        /**
+         * Adds the time since the last read returned to the parse
+         * time.
+         */
+        private void reading() {
+            if (returned != 0) {
+                final long written =
+                    WRITE_NANOS.get()[0] - writeNanos;
+                values[PARSE].addAndGet(System.nanoTime() - returned
+                                        - written);
+                returned = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,655 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Persistent cache of the standard output of read-only svn commands.
+ *
+ * <p>Only commands whose output cannot change are cached: the
+ * subcommand must be read-only and all revisions - operative as well
+ * as peg revisions - must be numbers.  Commands relative to HEAD,
+ * BASE, dates or the working copy's state always run svn.</p>
+ *
+ * <p>The key of an entry is a SHA-256 hash of the repository's UUID
+ * and the command line, with working copy paths replaced by their URL
+ * and BASE revision.  Entries are stored gzip compressed in files
+ * named after the key, once their total size exceeds the limit the
+ * least recently used ones get deleted.</p>
+ */
+final class SvnResponseCache {
+
+    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
+
+    /** 100 MB */
+    static final long DEFAULT_MAX_SIZE = 100L * 1024 * 1024;
+
+    private static final String SUFFIX = ".gz";
+
+    /** options that are followed by a value */
+    private static final Set<String> ARGUMENT_OPTIONS =
+        new HashSet<String>(Arrays.asList(new String[] {
+            "-r", "--revision", "-c", "--change", "-l", "--limit",
+            "--depth", "-x", "--extensions", "--diff-cmd", "--username",
+            "--password", "--config-dir", "--config-option", "--search",
+            "--search-and", "--with-revprop", "--show-item", "--encoding",
+        }));
+
+    /** options that read a file or depend on the working copy */
+    private static final Set<String> UNCACHEABLE_OPTIONS =
+        new HashSet<String>(Arrays.asList(new String[] {
+            "--targets", "--file", "-F", "--old", "--new", "--changelist",
+            "--cl",
+        }));
+
+    /** UUIDs of the repositories by URL */
+    private static final Map<String, String> UUIDS =
+        new HashMap<String, String>();
+
+    /** serializes evictions of all caches in this VM */
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final File dir;
+    private final long maxSize;
+
+    /**
+     * @param dir the cache directory
+     * @param maxSize size in bytes the entries may take
+     */
+    SvnResponseCache(final File dir, final long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Appends the operative revision as peg revision to URL targets
+     * that don't have one.
+     *
+     * <p>svn looks up a URL without a peg revision in HEAD, so the
+     * output of a command with numeric revisions could still change
+     * once the path gets replaced.  The youngest revision the command
+     * names pins down the target instead, so the command that runs
+     * matches its key.  Only commands that could be cached are
+     * changed, a peg revision would change the meaning of others
+     * like checkout or copy.</p>
+     *
+     * @param arguments the arguments of svn without the executable
+     * @return the new arguments or null if no target has been
+     * changed
+     */
+    static String[] withPegs(final String[] arguments) {
+        final ParsedCommand command = ParsedCommand.parse(arguments);
+        if (!isReadOnly(command) || command.youngest < 0) {
+            return null;
+        }
+        String[] result = null;
+        for (int i = 0; i < command.targets.size(); i++) {
+            final String target = command.targets.get(i);
+            if (target.indexOf("://") > 0 && getPeg(target) == null) {
+                if (result == null) {
+                    result = arguments.clone();
+                }
+                final int pos = command.positions.get(i).intValue();
+                // a trailing '@' is an empty peg of a name containing '@'
+                result[pos] = target + (target.endsWith("@") ? "" : "@")
+                    + command.youngest;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether the command has been parsed and its subcommand is
+     * read-only.
+     */
+    private static boolean isReadOnly(final ParsedCommand command) {
+        return command != null && command.subcommand != null
+            && HedgedExecution.isReadOnly(new String[] {
+                    command.subcommand});
+    }
+
+    /**
+     * Computes the key of a command.
+     *
+     * <p>Runs svn info for the targets to find the repository's UUID
+     * and to resolve working copy paths, UUIDs of URLs are remembered
+     * for the lifetime of the VM.  URL targets must have a numeric
+     * peg revision, see {@link #withPegs withPegs}.</p>
+     *
+     * @param task the task that runs the command
+     * @param arguments the arguments of svn without the executable
+     * @return the key or null if the command cannot be cached
+     */
+    String getKey(final AbstractSvnTask task, final String[] arguments) {
+        final ParsedCommand command = ParsedCommand.parse(arguments);
+        if (!isReadOnly(command)) {
+            return null;
+        }
+        final String subcommand = command.subcommand;
+        final List<String> options = command.options;
+        final List<String> targets = new ArrayList<String>(command.targets);
+        boolean numeric = command.youngest >= 0;
+        if (targets.isEmpty()) {
+            targets.add(".");
+        }
+
+        final StringBuffer key = new StringBuffer(subcommand);
+        for (int i = 0; i < options.size(); i++) {
+            key.append('\0').append(options.get(i));
+        }
+        final String[] pegs = new String[targets.size()];
+        for (int i = 0; i < pegs.length; i++) {
+            final String target = targets.get(i);
+            pegs[i] = getPeg(target);
+            if (pegs[i] != null) {
+                if (!isNumber(pegs[i])) {
+                    return null;
+                }
+                numeric = true;
+                targets.set(i, target.substring(0, target.lastIndexOf('@')));
+            } else if (target.indexOf("://") > 0) {
+                // svn would look it up in HEAD
+                return null;
+            }
+        }
+        // checked before svn info runs, svn info without a revision
+        // isn't cached itself
+        if (!numeric) {
+            return null;
+        }
+
+        String uuid = null;
+        for (int i = 0; i < pegs.length; i++) {
+            String target = targets.get(i);
+            String peg = pegs[i];
+            String targetUUID;
+            if (target.indexOf("://") > 0) {
+                targetUUID = getUUID(task, target);
+            } else {
+                // the output depends on the working copy's URL and
+                // BASE revision, or even its local modifications
+                if (subcommand.startsWith("di") && !isRange(options)) {
+                    return null;
+                }
+                final SvnInfo info = getInfo(task, target);
+                if (info == null || info.getURL() == null
+                    || info.getRevision() < 0) {
+                    return null;
+                }
+                targetUUID = info.getUUID();
+                target = info.getURL();
+                if (peg == null) {
+                    peg = String.valueOf(info.getRevision());
+                }
+            }
+            if (targetUUID == null
+                || (uuid != null && !uuid.equals(targetUUID))) {
+                return null;
+            }
+            uuid = targetUUID;
+            key.append('\0').append(target);
+            if (peg != null) {
+                key.append('@').append(peg);
+            }
+        }
+        return hash(uuid + '\0' + key);
+    }
+
+    /**
+     * Passes the cached output of a command on to a handler.
+     *
+     * @param key the key of the command
+     * @param handler receives the output
+     * @return false if the cache doesn't hold the command's output
+     * @throws IOException if the entry is broken, it gets deleted
+     */
+    boolean replay(final String key, final ExecuteStreamHandler handler)
+        throws IOException {
+        final File file = getFile(key);
+        InputStream in;
+        try {
+            in = new GZIPInputStream(new BufferedInputStream(
+                                         new FileInputStream(file)));
+        } catch (final IOException e) {
+            // not cached - or evicted right now
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        try {
+            ReplayInputStream.replay(handler, in,
+                                     new ByteArrayInputStream(new byte[0]));
+            return true;
+        } catch (final InterruptedException e) {
+            throw new IOException("interrupted while reading "
+                                  + file);
+        } catch (final IOException e) {
+            file.delete();
+            throw new IOException("broken svn cache entry " + file + ": "
+                                  + e.getMessage());
+        } finally {
+            FileUtils.close(in);
+        }
+    }
+
+    /**
+     * Wraps the handler of a command that is about to run so that
+     * its output gets stored.
+     *
+     * @param key the key of the command
+     * @param handler the handler that consumes the output
+     * @return the handler to use instead, the output is only stored
+     * once {@link Recorder#commit commit} is invoked
+     */
+    Recorder record(final String key, final ExecuteStreamHandler handler) {
+        return new Recorder(key, handler);
+    }
+
+    private File getFile(final String key) {
+        return new File(dir, key + SUFFIX);
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size
+     * fits into the limit.
+     */
+    private void evict() {
+        synchronized (EVICTION_LOCK) {
+            final File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            final List<File> entries = new ArrayList<File>();
+            long size = 0;
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].getName().endsWith(SUFFIX)) {
+                    entries.add(files[i]);
+                    size += files[i].length();
+                }
+            }
+            if (size <= maxSize) {
+                return;
+            }
+            final File[] sorted = entries.toArray(new File[entries.size()]);
+            Arrays.sort(sorted, new Comparator<File>() {
+                    public int compare(final File f1, final File f2) {
+                        final long l1 = f1.lastModified();
+                        final long l2 = f2.lastModified();
+                        return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+                    }
+                });
+            for (int i = 0; i < sorted.length && size > maxSize; i++) {
+                final long length = sorted[i].length();
+                if (sorted[i].delete()) {
+                    size -= length;
+                }
+            }
+        }
+    }
+
+    private static String getUUID(final AbstractSvnTask task,
+                                  final String url) {
+        synchronized (UUIDS) {
+            final String uuid = UUIDS.get(url);
+            if (uuid != null) {
+                return uuid;
+            }
+        }
+        final SvnInfo info = getInfo(task, url);
+        if (info == null || info.getUUID() == null) {
+            return null;
+        }
+        synchronized (UUIDS) {
+            UUIDS.put(url, info.getUUID());
+        }
+        return info.getUUID();
+    }
+
+    /**
+     * Runs svn info without a revision - so it is never cached
+     * itself.
+     *
+     * @return the info or null if svn failed
+     */
+    private static SvnInfo getInfo(final AbstractSvnTask task,
+                                   final String target) {
+        try {
+            return SvnInfo.get(task, target, null);
+        } catch (final BuildException e) {
+            task.log("Not using the cache, svn info failed for " + target,
+                     Project.MSG_VERBOSE);
+            return null;
+        }
+    }
+
+    /**
+     * The peg revision of a target.
+     *
+     * @return the peg or null if the target doesn't have one
+     */
+    private static String getPeg(final String target) {
+        final int at = target.lastIndexOf('@');
+        if (at > target.lastIndexOf('/') && at < target.length() - 1) {
+            return target.substring(at + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Whether the option - in its short form - specifies a revision.
+     */
+    private static boolean isRevisionOption(final String name) {
+        return "-r".equals(name) || "-c".equals(name);
+    }
+
+    /**
+     * Whether a revision argument only holds numbers - N or N:M for
+     * --revision, a comma separated list of N, -N and N-M for
+     * --change.
+     */
+    private static boolean isNumericRevision(final String name,
+                                             final String value) {
+        if (value == null || value.length() == 0) {
+            return false;
+        }
+        final String pattern = "-c".equals(name) ? "-?\\d+(-\\d+)?(,-?\\d+(-\\d+)?)*"
+            : "\\d+(:\\d+)?";
+        return value.matches(pattern);
+    }
+
+    /**
+     * Whether the options hold a revision range or a change, which
+     * compares two repository revisions.
+     */
+    private static boolean isRange(final List<String> options) {
+        for (int i = 0; i < options.size() - 1; i++) {
+            final String name = options.get(i);
+            if (isRevisionOption(name)) {
+                final String value = options.get(i + 1);
+                if (value.indexOf(':') > 0 || "-c".equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNumber(final String s) {
+        return s.matches("\\d+");
+    }
+
+    private static String hash(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(key.getBytes("UTF-8"));
+            final StringBuffer sb = new StringBuffer(digest.length * 2);
+            for (int i = 0; i < digest.length; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new BuildException(e);
+        } catch (final IOException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * The subcommand, options and targets of an svn command line.
+     */
+    private static final class ParsedCommand {
+        private String subcommand;
+        /** options in their short form, followed by their values */
+        private final List<String> options = new ArrayList<String>();
+        private final List<String> targets = new ArrayList<String>();
+        /** positions of the targets in the arguments */
+        private final List<Integer> positions = new ArrayList<Integer>();
+        /** youngest revision of the revision options, -1 if none */
+        private int youngest = -1;
+
+        /**
+         * @return the command or null if it uses options that cannot
+         * be cached or revisions that aren't numbers
+         */
+        static ParsedCommand parse(final String[] arguments) {
+            final ParsedCommand command = new ParsedCommand();
+            for (int i = 0; i < arguments.length; i++) {
+                final String arg = arguments[i];
+                if (!arg.startsWith("-") || arg.length() == 1) {
+                    if (command.subcommand == null) {
+                        command.subcommand = arg;
+                    } else {
+                        command.targets.add(arg);
+                        command.positions.add(Integer.valueOf(i));
+                    }
+                    continue;
+                }
+                final int eq = arg.indexOf('=');
+                final boolean inline = arg.startsWith("--") && eq > 0;
+                String name = inline ? arg.substring(0, eq) : arg;
+                if (UNCACHEABLE_OPTIONS.contains(name)) {
+                    return null;
+                }
+                String value = null;
+                if (inline) {
+                    value = arg.substring(eq + 1);
+                } else if (ARGUMENT_OPTIONS.contains(arg)) {
+                    if (++i == arguments.length) {
+                        return null;
+                    }
+                    value = arguments[i];
+                } else if (arg.startsWith("-r") || arg.startsWith("-c")) {
+                    // -r5 or -c5
+                    name = arg.substring(0, 2);
+                    value = arg.substring(2);
+                }
+                if ("--revision".equals(name)) {
+                    name = "-r";
+                } else if ("--change".equals(name)) {
+                    name = "-c";
+                }
+                if (isRevisionOption(name)) {
+                    if (!isNumericRevision(name, value)) {
+                        return null;
+                    }
+                    final String[] numbers = value.split("\\D+");
+                    for (int j = 0; j < numbers.length; j++) {
+                        if (numbers[j].length() > 0) {
+                            command.youngest =
+                                Math.max(command.youngest,
+                                         Integer.parseInt(numbers[j]));
+                        }
+                    }
+                }
+                command.options.add(name);
+                if (value != null) {
+                    command.options.add(value);
+                }
+            }
+            return command;
+        }
+    }
+
+    /**
+     * Stores the output of a command while it is passed on to the
+     * original handler.
+     */
+    final class Recorder implements ExecuteStreamHandler {
+        private final String key;
+        private final ExecuteStreamHandler handler;
+        private File tmp;
+        private OutputStream out;
+        /** whether svn has written anything to standard error */
+        private boolean errors;
+
+        private Recorder(final String key,
+                         final ExecuteStreamHandler handler) {
+            this.key = key;
+            this.handler = handler;
+        }
+
+        public void setProcessInputStream(final OutputStream os)
+            throws IOException {
+            handler.setProcessInputStream(os);
+        }
+
+        public void setProcessOutputStream(final InputStream is)
+            throws IOException {
+            synchronized (this) {
+                try {
+                    if (!dir.isDirectory() && !dir.mkdirs()) {
+                        throw new IOException("failed to create " + dir);
+                    }
+                    tmp = FILE_UTILS.createTempFile(null, "svnresponse",
+                                                    ".tmp", dir, false, true);
+                    out = new GZIPOutputStream(new BufferedOutputStream(
+                                                   new FileOutputStream(tmp)));
+                } catch (final IOException e) {
+                    discard();
+                }
+            }
+            handler.setProcessOutputStream(new FilterInputStream(is) {
+                    public int read() throws IOException {
+                        final int c = super.read();
+                        if (c != -1) {
+                            store(new byte[] {(byte) c}, 0, 1);
+                        }
+                        return c;
+                    }
+
+                    public int read(final byte[] b, final int off,
+                                    final int len) throws IOException {
+                        final int n = super.read(b, off, len);
+                        if (n > 0) {
+                            store(b, off, n);
+                        }
+                        return n;
+                    }
+                });
+        }
+
+        public void setProcessErrorStream(final InputStream is)
+            throws IOException {
+            handler.setProcessErrorStream(new FilterInputStream(is) {
+                    public int read() throws IOException {
+                        final int c = super.read();
+                        errors(c == -1 ? 0 : 1);
+                        return c;
+                    }
+
+                    public int read(final byte[] b, final int off,
+                                    final int len) throws IOException {
+                        final int n = super.read(b, off, len);
+                        errors(n);
+                        return n;
+                    }
+                });
+        }
+
+        public void start() throws IOException {
+            handler.start();
+        }
+
+        public void stop() {
+            handler.stop();
+        }
+
+        /**
+         * Adds the output to the cache if svn succeeded without
+         * complaining, discards it otherwise.
+         *
+         * <p>Must be invoked after the handler has been stopped, the
+         * output has been consumed completely by then.</p>
+         *
+         * @param exitCode svn's exit code
+         */
+        void commit(final int exitCode) {
+            File file = null;
+            synchronized (this) {
+                if (exitCode == 0 && !errors && out != null) {
+                    file = getFile(key);
+                    try {
+                        out.close();
+                        out = null;
+                        FILE_UTILS.rename(tmp, file);
+                        tmp = null;
+                    } catch (final IOException e) {
+                        file = null;
+                    }
+                }
+                discard();
+            }
+            if (file != null) {
+                evict();
+            }
+        }
+
+        private synchronized void store(final byte[] b, final int off,
+                                        final int len) {
+            if (out != null) {
+                try {
+                    out.write(b, off, len);
+                } catch (final IOException e) {
+                    discard();
+                }
+            }
+        }
+
+        private synchronized void errors(final int n) {
+            if (n > 0) {
+                errors = true;
+            }
+        }
+
+        private synchronized void discard() {
+            FileUtils.close(out);
+            out = null;
+            if (tmp != null) {
+                tmp.delete();
+                tmp = null;
+            }
+        }
+    }
+}
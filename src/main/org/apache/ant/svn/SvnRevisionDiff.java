@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
@@ -30,6 +31,7 @@ import java.util.StringTokenizer;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
 import org.apache.tools.ant.util.FileUtils;
 
 /**
@@ -57,11 +59,6 @@ import org.apache.tools.ant.util.FileUtils;
  */
 public class SvnRevisionDiff extends AbstractSvnTask {
 
-    /**
-     * Used to create the temp file for svn log
-     */
-    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
-
     /**
      * The earliest revision from which diffs are to be included in the report.
      */
@@ -77,6 +74,26 @@ public class SvnRevisionDiff extends AbstractSvnTask {
      */
     private File mydestfile;
 
+    /**
+     * How to run svn diff.
+     */
+    private String mode = SvnDiffHandler.FULL;
+
+    /**
+     * Format of the report.
+     */
+    private String format = ReportFormat.XML;
+
+    /**
+     * Title of an HTML report.
+     */
+    private String title;
+
+    /**
+     * URL the paths are appended to for links in an HTML report.
+     */
+    private String repoURL;
+
     /**
      * Set the start revision.
      *
@@ -95,6 +112,53 @@ public class SvnRevisionDiff extends AbstractSvnTask {
         myendRevision = s;
     }
 
+    /**
+     * Set the kind of svn diff to run.
+     *
+     * <p>The default "full" runs and parses a complete svn diff,
+     * "summarize" only transfers the names of changed paths using
+     * svn diff --summarize --xml, "summarize-text" does the same for
+     * clients that don't support --xml for diff.  Both summarize
+     * modes report a deleted directory as a single path.</p>
+     *
+     * @param m the mode
+     */
+    public void setMode(String m) {
+        mode = m;
+    }
+
+    /**
+     * Set the format of the report.
+     *
+     * <p>"xml" (the default), "jsonl" for one JSON object per path
+     * and line, "csv" or "html" for the report diff.xsl would
+     * create.</p>
+     *
+     * @param f the format
+     */
+    public void setFormat(String f) {
+        format = f;
+    }
+
+    /**
+     * Set the title of an HTML report.
+     *
+     * @param t the title
+     */
+    public void setTitle(String t) {
+        title = t;
+    }
+
+    /**
+     * Set the URL that the paths are appended to for links in an
+     * HTML report.
+     *
+     * @param u the URL
+     */
+    public void setRepoURL(String u) {
+        repoURL = u;
+    }
+
     /**
      * Set the output file for the diff.
      *
@@ -110,36 +174,58 @@ public class SvnRevisionDiff extends AbstractSvnTask {
      * @exception BuildException if an error occurs
      */
     public void execute() throws BuildException {
+        if (executeInBackground()) {
+            return;
+        }
+        startMetrics();
+        try {
+            diff();
+        } finally {
+            publishMetrics();
+        }
+    }
+
+    /**
+     * Runs svn diff and writes the report.
+     *
+     * @exception BuildException if an error occurs
+     */
+    private void diff() throws BuildException {
         // validate the input parameters
         validate();
 
         // build the rdiff command
         setSubCommand("diff");
-        setRevision(mystartRevision + ":" + myendRevision);
-        addSubCommandArgument("--no-diff-deleted");
+        SvnCommand command = new SvnCommand(getSubCommand())
+            .withRevision(mystartRevision + ":" + myendRevision);
+        command = SvnDiffHandler.addModeArguments(command, mode);
 
-        File tmpFile = null;
-        try {
-            tmpFile = 
-                FILE_UTILS.createTempFile("svnrevisiondiff", ".log", null);
-            tmpFile.deleteOnExit();
-            setOutput(tmpFile);
+        final OutputStream parser =
+            SvnDiffHandler.createParser(mode, getSvnURL());
+        setExecuteStreamHandler(new PumpStreamHandler(parser,
+                                                      getErrorStream()));
 
-            // run the svn command
-            super.execute();
-
-            // parse the diff
-            SvnEntry.Path[] entries = SvnDiffHandler.parseDiff(tmpFile);
-
-            // write the revision diff
-            SvnDiffHandler.writeDiff(mydestfile, entries, "revisiondiff",
-                                     "start", mystartRevision,
-                                     "end", myendRevision, getSvnURL());
+        // run the svn command
+        boolean success = false;
+        try {
+            executeCommands(command);
+            success = true;
         } finally {
-            if (tmpFile != null) {
-                tmpFile.delete();
+            if (!success) {
+                FileUtils.close(parser);
             }
         }
+
+        // the diff has been parsed while svn was running
+        SvnEntry.Path[] entries = SvnDiffHandler.getPaths(parser);
+
+        // write the revision diff
+        final long start = getMetrics().startWrite();
+        SvnDiffHandler.writeDiff(mydestfile, format, title, repoURL,
+                                 entries, "revisiondiff",
+                                 "start", mystartRevision,
+                                 "end", myendRevision, getSvnURL());
+        getMetrics().written(entries.length, start);
     }
 
     /**
@@ -152,6 +238,9 @@ public class SvnRevisionDiff extends AbstractSvnTask {
             throw new BuildException("Destfile must be set.");
         }
 
+        SvnDiffHandler.validateMode(mode);
+        ReportFormat.validate(format);
+
         if (null == mystartRevision) {
             throw new BuildException("Start revision or start date must be set.");
         }
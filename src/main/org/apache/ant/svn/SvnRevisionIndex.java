@@ -0,0 +1,404 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.Execute;
+import org.apache.tools.ant.taskdefs.LogOutputStream;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
+import org.apache.tools.ant.types.Commandline;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Persistent index of the commit times of all revisions of a
+ * repository, used to turn dates into revision numbers without
+ * asking svn.
+ *
+ * <p>The index is sorted by revision and - like svn itself does
+ * when it resolves a date - assumes commit times grow with the
+ * revision number, so a date can be found using a binary
+ * search.</p>
+ *
+ * <p>The index file lives in the sub-directory of the cache
+ * directory named after the repository's UUID, next to the log
+ * caches.  It holds a contiguous range of revisions filled from the
+ * output of <code>svn log -q</code> on the repository root.  The
+ * range starts out as the revisions around the dates that have been
+ * requested and only grows as far as later requests need it.</p>
+ */
+final class SvnRevisionIndex {
+
+    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
+
+    /** identifies index files */
+    private static final int MAGIC = 0x53565249;
+    /** version of the file format */
+    private static final int VERSION = 2;
+
+    private static final String FILE_NAME = "revisions.idx";
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private final File file;
+
+    /** revision numbers in ascending order */
+    private int[] revisions = new int[INITIAL_SIZE];
+    /** commit time of the revision at the same position */
+    private long[] times = new long[INITIAL_SIZE];
+    private int size = 0;
+    /** first revision of the range the index covers */
+    private int low = 0;
+    /** last revision of the range the index covers, 0 if empty */
+    private int high = 0;
+
+    /**
+     * Creates the index for a repository.
+     *
+     * @param dir the cache directory
+     * @param uuid the repository's UUID
+     */
+    SvnRevisionIndex(final File dir, final String uuid) {
+        this(new File(new File(dir, uuid), FILE_NAME));
+    }
+
+    private SvnRevisionIndex(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the index file if it exists.
+     *
+     * <p>An index file that uses an unknown format is ignored.</p>
+     *
+     * @return whether the index file has been read
+     */
+    boolean load() throws IOException {
+        size = low = high = 0;
+        if (!file.isFile()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                                         new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            final int l = in.readInt();
+            final int h = in.readInt();
+            final int count = in.readInt();
+            revisions = new int[Math.max(count, INITIAL_SIZE)];
+            times = new long[revisions.length];
+            for (int i = 0; i < count; i++) {
+                revisions[i] = in.readInt();
+                times[i] = in.readLong();
+            }
+            size = count;
+            low = l;
+            high = h;
+            return true;
+        } finally {
+            FileUtils.close(in);
+        }
+    }
+
+    /**
+     * Writes the index file, replaces the old one only once the new
+     * one has been written completely.
+     */
+    void save() throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir);
+        }
+        File tmp = FILE_UTILS.createTempFile(null, "svnrevs", ".tmp", dir,
+                                             false, true);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                                           new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(low);
+            out.writeInt(high);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(revisions[i]);
+                out.writeLong(times[i]);
+            }
+            out.close();
+            out = null;
+            FILE_UTILS.rename(tmp, file);
+        } finally {
+            FileUtils.close(out);
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #getRevision getRevision} knows the revision
+     * for a time: the index must contain the revision committed last
+     * before the time and one committed after it - or the youngest
+     * revision of the repository.
+     *
+     * @param time milliseconds since the epoch
+     * @param head the youngest revision of the repository
+     */
+    boolean resolves(final long time, final int head) {
+        return size > 0 && (low <= 1 || times[0] <= time)
+            && (times[size - 1] > time || high >= head);
+    }
+
+    /**
+     * The youngest revision committed at or before a given time,
+     * that's the revision svn uses for a date.
+     *
+     * @param time milliseconds since the epoch
+     * @return the revision or 0 if all revisions are younger
+     */
+    int getRevision(final long time) {
+        int first = 0;
+        int last = size - 1;
+        // find the first revision that is younger than time
+        while (first <= last) {
+            final int mid = (first + last) >>> 1;
+            if (times[mid] <= time) {
+                first = mid + 1;
+            } else {
+                last = mid - 1;
+            }
+        }
+        return first == 0 ? 0 : revisions[first - 1];
+    }
+
+    /**
+     * Adds a revision, revisions must be added in ascending order.
+     *
+     * @param revision the revision
+     * @param time its commit time in milliseconds since the epoch
+     */
+    private void add(final int revision, final long time) {
+        if (size > 0 && revision <= revisions[size - 1]) {
+            return;
+        }
+        if (size == revisions.length) {
+            final int[] newRevisions = new int[size * 2];
+            final long[] newTimes = new long[size * 2];
+            System.arraycopy(revisions, 0, newRevisions, 0, size);
+            System.arraycopy(times, 0, newTimes, 0, size);
+            revisions = newRevisions;
+            times = newTimes;
+        }
+        revisions[size] = revision;
+        times[size++] = time;
+    }
+
+    /**
+     * Runs svn log -q to extend the index to a range of revisions.
+     *
+     * <p>Only the revisions missing from the index are fetched, the
+     * index keeps covering a contiguous range so it grows to include
+     * the revisions between its old range and the new one as
+     * well.</p>
+     *
+     * @param task the task to run svn with, provides working
+     * directory and error handling
+     * @param root the URL of the repository root
+     * @param from the first revision the index must cover
+     * @param to the last revision the index must cover
+     * @return false if svn failed
+     */
+    boolean update(final AbstractSvnTask task, final String root,
+                   final int from, final int to) {
+        if (0 == high) {
+            if (!fetch(task, root, from, to)) {
+                return false;
+            }
+            low = from;
+            high = to;
+            return true;
+        }
+        if (from < low) {
+            final SvnRevisionIndex older = new SvnRevisionIndex(file);
+            if (!older.fetch(task, root, from, low - 1)) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                older.add(revisions[i], times[i]);
+            }
+            revisions = older.revisions;
+            times = older.times;
+            size = older.size;
+            low = from;
+        }
+        if (to > high) {
+            if (!fetch(task, root, high + 1, to)) {
+                return false;
+            }
+            high = to;
+        }
+        return true;
+    }
+
+    /**
+     * Runs svn log -q on a range of revisions and adds them to the
+     * index.
+     *
+     * @return false if svn failed
+     */
+    private boolean fetch(final AbstractSvnTask task, final String root,
+                          final int from, final int to) {
+        // revision 0 has no commit time
+        final int first = Math.max(from, 1);
+        if (to < first) {
+            return true;
+        }
+        final Commandline c = new Commandline();
+        c.setExecutable(task.getExecutable());
+        c.createArgument().setValue("log");
+        c.createArgument().setValue("--quiet");
+        c.createArgument().setValue("--revision");
+        c.createArgument().setValue(first + ":" + to);
+        c.createArgument().setValue(root);
+
+        final OutputStream parser = new Parser();
+        int retCode = Execute.INVALID;
+        try {
+            retCode =
+                task.runCommand(c, new PumpStreamHandler(parser,
+                                                         new LogOutputStream(
+                                                             task,
+                                                             Project.MSG_ERR)));
+        } catch (final BuildException e) {
+            // failonerror is set, svn can still resolve the dates
+            task.log(e.getMessage(), Project.MSG_VERBOSE);
+        } finally {
+            FileUtils.close(parser);
+        }
+        return !Execute.isFailure(retCode);
+    }
+
+    /**
+     * Reads the "rREV | AUTHOR | DATE (...)" lines of svn log -q,
+     * all other lines are separators.
+     */
+    private class Parser extends LineOrientedOutputStream {
+        /** "yyyy-MM-dd HH:mm:ss +hhmm" */
+        private static final int DATE_LENGTH = 25;
+
+        private final Calendar calendar =
+            Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+
+        protected void processLine(final byte[] buf, final int off,
+                                   final int len) {
+            if (len == 0 || buf[off] != 'r') {
+                return;
+            }
+            final int bar = indexOfBar(buf, off + 1, off + len);
+            final int revision = number(buf, off + 1, bar - off - 1);
+            if (bar < 0 || revision < 0) {
+                return;
+            }
+            final int date = indexOfBar(buf, bar + 3, off + len) + 3;
+            if (date < 3 || date + DATE_LENGTH > off + len) {
+                return;
+            }
+            final long time = parseDate(buf, date);
+            if (time != Long.MIN_VALUE) {
+                add(revision, time);
+            }
+        }
+
+        protected void processLine(final String line) {
+        }
+
+        /**
+         * Parses svn's date format including the offset.
+         *
+         * @return the time or Long.MIN_VALUE if the date is broken
+         */
+        private long parseDate(final byte[] buf, final int off) {
+            final int year = number(buf, off, 4);
+            final int month = number(buf, off + 5, 2);
+            final int day = number(buf, off + 8, 2);
+            final int hour = number(buf, off + 11, 2);
+            final int minute = number(buf, off + 14, 2);
+            final int second = number(buf, off + 17, 2);
+            final int offsetHours = number(buf, off + 21, 2);
+            final int offsetMinutes = number(buf, off + 23, 2);
+            final byte sign = buf[off + 20];
+            if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0
+                || second < 0 || offsetHours < 0 || offsetMinutes < 0
+                || (sign != '+' && sign != '-')) {
+                return Long.MIN_VALUE;
+            }
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            final long offset = (offsetHours * 60L + offsetMinutes) * 60000;
+            return calendar.getTimeInMillis()
+                - (sign == '+' ? offset : -offset);
+        }
+    }
+
+    /**
+     * Index of the next " | " in a line, -1 if there is none.
+     */
+    private static int indexOfBar(final byte[] buf, final int from,
+                                  final int end) {
+        for (int i = from; i + 3 <= end; i++) {
+            if (buf[i] == ' ' && buf[i + 1] == '|' && buf[i + 2] == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a number of ASCII digits, -1 if there are other
+     * characters or none at all.
+     */
+    private static int number(final byte[] buf, final int off,
+                              final int digits) {
+        if (digits <= 0) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = off; i < off + digits; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return -1;
+            }
+            n = n * 10 + buf[i] - '0';
+        }
+        return n;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
@@ -30,6 +31,7 @@ import java.util.StringTokenizer;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
 import org.apache.tools.ant.util.FileUtils;
 
 /**
@@ -94,11 +96,6 @@ public class SvnTagDiff extends AbstractSvnTask {
     private static final String TRUNK = "trunk";
     private static final String TRUNK_SLASH = TRUNK + "/";
 
-    /**
-     * Used to create the temp file for svn log
-     */
-    private static final FileUtils FILE_UTILS = FileUtils.getFileUtils();
-
     /**
      * The earliest revision from which diffs are to be included in the report.
      */
@@ -121,6 +118,26 @@ public class SvnTagDiff extends AbstractSvnTask {
      */
     private File mydestfile;
 
+    /**
+     * How to run svn diff.
+     */
+    private String mode = SvnDiffHandler.FULL;
+
+    /**
+     * Format of the report.
+     */
+    private String format = ReportFormat.XML;
+
+    /**
+     * Title of an HTML report.
+     */
+    private String title;
+
+    /**
+     * URL the paths are appended to for links in an HTML report.
+     */
+    private String repoURL;
+
     /**
      * Base URL.
      */
@@ -211,6 +228,53 @@ public class SvnTagDiff extends AbstractSvnTask {
         toBranch = s;
     }
 
+    /**
+     * Set the kind of svn diff to run.
+     *
+     * <p>The default "full" runs and parses a complete svn diff,
+     * "summarize" only transfers the names of changed paths using
+     * svn diff --summarize --xml, "summarize-text" does the same for
+     * clients that don't support --xml for diff.  Both summarize
+     * modes report a deleted directory as a single path.</p>
+     *
+     * @param m the mode
+     */
+    public void setMode(String m) {
+        mode = m;
+    }
+
+    /**
+     * Set the format of the report.
+     *
+     * <p>"xml" (the default), "jsonl" for one JSON object per path
+     * and line, "csv" or "html" for the report diff.xsl would
+     * create.</p>
+     *
+     * @param f the format
+     */
+    public void setFormat(String f) {
+        format = f;
+    }
+
+    /**
+     * Set the title of an HTML report.
+     *
+     * @param t the title
+     */
+    public void setTitle(String t) {
+        title = t;
+    }
+
+    /**
+     * Set the URL that the paths are appended to for links in an
+     * HTML report.
+     *
+     * @param u the URL
+     */
+    public void setRepoURL(String u) {
+        repoURL = u;
+    }
+
     /**
      * Set the output file for the diff.
      *
@@ -238,6 +302,23 @@ public class SvnTagDiff extends AbstractSvnTask {
      * @exception BuildException if an error occurs
      */
     public void execute() throws BuildException {
+        if (executeInBackground()) {
+            return;
+        }
+        startMetrics();
+        try {
+            diff();
+        } finally {
+            publishMetrics();
+        }
+    }
+
+    /**
+     * Runs svn diff and writes the report.
+     *
+     * @exception BuildException if an error occurs
+     */
+    private void diff() throws BuildException {
         // validate the input parameters
         validate();
 
@@ -252,51 +333,57 @@ public class SvnTagDiff extends AbstractSvnTask {
 
         // build the rdiff command
         setSubCommand("diff");
-        addSubCommandArgument("--no-diff-deleted");
-        addDiffArguments();
+        SvnCommand command =
+            SvnDiffHandler.addModeArguments(new SvnCommand(getSubCommand()),
+                                            mode);
+        command = command.withArguments(new String[] {
+                getCopyURL(fromCopy, fromDir), getCopyURL(toCopy, toDir)
+            });
+
+        final OutputStream parser =
+            SvnDiffHandler.createParser(mode,
+                                        getCopyURL(fromCopy, fromDir));
+        setExecuteStreamHandler(new PumpStreamHandler(parser,
+                                                      getErrorStream()));
 
-        File tmpFile = null;
+        // run the svn command
+        boolean success = false;
         try {
-            tmpFile = 
-                FILE_UTILS.createTempFile("svntagdiff", ".log", null);
-            tmpFile.deleteOnExit();
-            setOutput(tmpFile);
-
-            // run the svn command
-            super.execute();
-
-            // parse the diff
-            SvnEntry.Path[] entries = SvnDiffHandler.parseDiff(tmpFile);
-
-            // write the revision diff
-            SvnDiffHandler.writeDiff(mydestfile, entries, "tagdiff",
-                                     fromName, fromCopy, toName, 
-                                     toCopy, 
-                                     baseURL);
+            executeCommands(command);
+            success = true;
         } finally {
-            if (tmpFile != null) {
-                tmpFile.delete();
+            if (!success) {
+                FileUtils.close(parser);
             }
         }
+
+        // the diff has been parsed while svn was running
+        SvnEntry.Path[] entries = SvnDiffHandler.getPaths(parser);
+
+        // write the revision diff
+        final long start = getMetrics().startWrite();
+        SvnDiffHandler.writeDiff(mydestfile, format, title, repoURL,
+                                 entries, "tagdiff",
+                                 fromName, fromCopy, toName, 
+                                 toCopy, 
+                                 baseURL);
+        getMetrics().written(entries.length, start);
     }
 
-    private void addDiffArguments(){
-        if (fromCopy.equals(TRUNK) || fromCopy.equals(TRUNK_SLASH)) {
-            addSubCommandArgument(baseURL + TRUNK_SLASH);
-        } else {
-            if (fromCopy.endsWith("/")) {
-                addSubCommandArgument(baseURL + fromDir + fromCopy);
-            } else {
-                addSubCommandArgument(baseURL + fromDir + fromCopy + "/");
-            }
-        }
-        if (toCopy.equals(TRUNK) || toCopy.equals(TRUNK_SLASH)) {
-            addSubCommandArgument(baseURL + TRUNK_SLASH);
+    /**
+     * The URL of a branch, tag or trunk.
+     *
+     * @param copy name of the branch or tag
+     * @param dir directory holding copy
+     */
+    private String getCopyURL(String copy, String dir) {
+        if (copy.equals(TRUNK) || copy.equals(TRUNK_SLASH)) {
+            return baseURL + TRUNK_SLASH;
         } else {
-            if (toCopy.endsWith("/")) {
-                addSubCommandArgument(baseURL + toDir + toCopy);
+            if (copy.endsWith("/")) {
+                return baseURL + dir + copy;
             } else {
-                addSubCommandArgument(baseURL + toDir + toCopy + "/");
+                return baseURL + dir + copy + "/";
             }
         }
     }
@@ -311,6 +398,9 @@ public class SvnTagDiff extends AbstractSvnTask {
             throw new BuildException("Destfile must be set.");
         }
 
+        SvnDiffHandler.validateMode(mode);
+        ReportFormat.validate(format);
+
         if (null == fromTag && null== fromBranch) {
             throw new BuildException("fromTag or fromBranch must be set.");
         }
@@ -0,0 +1,61 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.ant.svn;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+
+/**
+ * Waits for a task of this antlib that has been executed with
+ * async set.
+ *
+ * <p>Rethrows the exception the task has failed with and sets the
+ * properties of the task.</p>
+ *
+ * @ant.task category="scm"
+ */
+public class SvnWait extends Task {
+
+    private String id;
+
+    /**
+     * The id of the task to wait for.
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Waits for the task.
+     * @throws BuildException if the task has failed or there isn't
+     * one with the given id
+     */
+    public void execute() throws BuildException {
+        if (id == null) {
+            throw new BuildException("id is required", getLocation());
+        }
+        AsyncExecution execution = AsyncExecution.remove(getProject(), id);
+        if (execution == null) {
+            throw new BuildException("no svn task " + id
+                                     + " is executing in the background",
+                                     getLocation());
+        }
+        execution.join();
+    }
+}
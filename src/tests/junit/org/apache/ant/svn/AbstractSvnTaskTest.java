@@ -18,8 +18,13 @@
 package org.apache.ant.svn;
 
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.tools.ant.BuildFileTest;
+import org.apache.tools.ant.taskdefs.condition.Os;
+import org.apache.tools.ant.util.FileUtils;
 
 /**
  */
@@ -72,4 +77,171 @@ public class AbstractSvnTaskTest extends BuildFileTest {
 
         assertTrue("now it is there", f.exists());
     }
+
+    public void testHedge() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        long start = System.currentTimeMillis();
+        executeTarget("hedge");
+        // the first process sleeps for ten seconds
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals("fast", read("hedge/output.txt").trim());
+    }
+
+    public void testHedgePrefersSuccess() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        // the first process fails before the second one succeeds
+        executeTarget("hedge-failure");
+        assertEquals("slow but fine", read("hedge/output.txt").trim());
+    }
+
+    public void testResponseCache() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("responsecache");
+        String first = read("cache/first.txt");
+        assertEquals("contents of cat --revision 5"
+                     + " file:///repo/trunk/README@5", first.trim());
+        assertEquals(first, read("cache/second.txt"));
+        String calls = read("cache/calls.txt");
+        assertEquals(calls, calls.indexOf("cat"), calls.lastIndexOf("cat"));
+    }
+
+    public void testResponseCacheKeepsWriteCommands() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("responsecache-write");
+        assertEquals("copy file:///repo/trunk --revision 5"
+                     + " file:///repo/tags/1.0\n"
+                     + "checkout --revision 5 file:///repo/trunk\n",
+                     read("cache/calls.txt"));
+    }
+
+    public void testResponseCachePegsURLs() {
+        assertEquals(Arrays.asList(new String[] {
+                    "cat", "--revision", "5", "file:///repo/README@5"}),
+            Arrays.asList(SvnResponseCache.withPegs(new String[] {
+                        "cat", "--revision", "5", "file:///repo/README"})));
+        assertEquals(Arrays.asList(new String[] {
+                    "log", "-r", "3:7", "file:///repo/a@b@7", "wc"}),
+            Arrays.asList(SvnResponseCache.withPegs(new String[] {
+                        "log", "-r", "3:7", "file:///repo/a@b@", "wc"})));
+        // already pegged
+        assertNull(SvnResponseCache.withPegs(new String[] {
+                    "diff", "-c", "-9", "file:///repo/trunk@4"}));
+        // not cached anyway
+        assertNull(SvnResponseCache.withPegs(new String[] {
+                    "log", "-r", "HEAD", "file:///repo/trunk"}));
+        // the working copy's revision is used as peg
+        assertNull(SvnResponseCache.withPegs(new String[] {
+                    "log", "-r", "5", "wc"}));
+        // a peg would change the meaning of commands that aren't cached
+        assertNull(SvnResponseCache.withPegs(new String[] {
+                    "copy", "--revision", "5", "file:///repo/trunk",
+                    "file:///repo/tags/1.0"}));
+        assertNull(SvnResponseCache.withPegs(new String[] {
+                    "checkout", "-r", "5", "file:///repo/trunk", "wc"}));
+        // svn would look the URL up in HEAD
+        assertNull(new SvnResponseCache(new File("."), 0)
+                   .getKey(null, new String[] {
+                           "cat", "-r", "5", "file:///repo/README"}));
+    }
+
+    public void testFlightRecorderWithoutRecording() {
+        // no recording has enabled the events
+        SvnFlightRecorder.Kind[] kinds = new SvnFlightRecorder.Kind[] {
+            SvnFlightRecorder.COMMAND, SvnFlightRecorder.PARSE,
+            SvnFlightRecorder.WRITE,
+        };
+        for (int i = 0; i < kinds.length; i++) {
+            assertFalse(kinds[i].isEnabled());
+            assertNull(SvnFlightRecorder.begin(kinds[i]));
+        }
+        Object event = SvnFlightRecorder.begin(SvnFlightRecorder.COMMAND);
+        SvnFlightRecorder.commit(event, new Object[] {
+                "svn info", Integer.valueOf(0), Long.valueOf(10),
+                Long.valueOf(0)});
+    }
+
+    public void testReuse() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        // the task has an id, so both runs use the same instance
+        executeTarget("reuse");
+        executeTarget("reuse");
+        String expected = "diff --revision 2:5 --no-diff-deleted"
+            + " file:///repo/trunk\n";
+        assertEquals(expected + expected, read("reuse/calls.txt"));
+    }
+
+    public void testThreads() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("threads");
+        // the commands complete in a different order
+        assertEquals("one\ntwo\nthree\nfour\n",
+                     read("threads/output.txt"));
+    }
+
+    public void testThreadsFailFast() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        long start = System.currentTimeMillis();
+        expectBuildExceptionContaining("threads-failfast",
+                                       "the second command fails",
+                                       "exited with error code 1");
+        // the first command sleeps for ten seconds, the third one
+        // never starts
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals("two\n", read("threads/output.txt"));
+    }
+
+    public void testAsync() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        long start = System.currentTimeMillis();
+        executeTarget("async");
+        // svn and the sleep task both take two seconds
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertEquals("one", read("async/output.txt").trim());
+        assertPropertyEquals("background.commands", "1");
+    }
+
+    public void testAsyncFailure() {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        expectBuildExceptionContaining("async-fail",
+                                       "svnwait rethrows the failure",
+                                       "exited with error code 1");
+    }
+
+    private String read(String name) throws IOException {
+        String tmpDir = getProject().getProperty("tmpdir");
+        FileReader r = new FileReader(getProject()
+                                      .resolveFile(tmpDir + "/" + name));
+        try {
+            return FileUtils.readFully(r);
+        } finally {
+            r.close();
+        }
+    }
 }
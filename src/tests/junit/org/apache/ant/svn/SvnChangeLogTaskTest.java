@@ -17,10 +17,17 @@
  */
 package org.apache.ant.svn;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Calendar;
+import java.util.TimeZone;
 
 import org.apache.tools.ant.BuildFileTest;
+import org.apache.tools.ant.taskdefs.condition.Os;
 import org.apache.tools.ant.util.FileUtils;
 
 import junit.framework.Assert;
@@ -47,12 +54,268 @@ public class SvnChangeLogTaskTest extends BuildFileTest {
         assertRev371996(log);
     }
 
+    public void testLogXml() throws IOException {
+        String log = executeTargetAndReadLogFully("logXml");
+        assertRev482074(log);
+        assertRev371996(log);
+    }
+
+    public void testParsersCreateSameLog() throws IOException {
+        String text = executeTargetAndReadLogFully("log");
+        String xml = executeTargetAndReadLogFully("logXml");
+        assertEquals(text, xml);
+    }
+
+    public void testLogJsonl() throws IOException {
+        String log = executeTargetAndReadLogFully("logJsonl");
+        int rev = log.indexOf("\"author\":\"bodewig\",\"revision\":482074,");
+        assertTrue(rev > -1);
+        assertTrue(log.indexOf("ant/site/ant/sources/antlibs/svn\","
+                               + "\"action\":\"modified\"}", rev) > -1);
+    }
+
+    public void testLogHtml() throws IOException {
+        String log = executeTargetAndReadLogFully("logHtml");
+        assertTrue(log.indexOf("<title>Site</title>") > -1);
+        int rev = log.indexOf("<td class=\"dateAndAuthor\">");
+        assertTrue(rev > -1);
+        assertTrue(log.indexOf("ant/site/ant/sources/antlibs/svn\">", rev)
+                   > rev);
+    }
+
+    public void testLogCsv() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("log-csv");
+        String csv = read("log.csv");
+        String message = ",\"fix \"\"quoted\"\", comma\nline\u2028separator\"";
+        assertTrue(csv.startsWith("date,time,author,revision,repository,"
+                                  + "action,path,message\r\n2020-01-0"));
+        assertTrue(csv.indexOf(",alice,2,,added,\"/trunk/a,b.txt\""
+                               + message + "\r\n") > -1);
+        assertTrue(csv.endsWith(",alice,2,,modified,\"/trunk/say \"\"hi\"\".txt\""
+                                + message + "\r\n"));
+    }
+
+    public void testMetrics() throws IOException {
+        String log = executeTargetAndReadLogFully("metrics");
+        assertRev482074(log);
+        assertTrue(Integer.parseInt(getProject()
+                                    .getProperty("metrics.commands")) > 0);
+        assertTrue(Long.parseLong(getProject()
+                                  .getProperty("metrics.stdout.bytes")) > 0);
+        assertTrue(Integer.parseInt(getProject()
+                                    .getProperty("metrics.entries")) > 0);
+    }
+
     public void testStart() throws IOException {
         String log = executeTargetAndReadLogFully("start");
         assertRev482074(log);
         assertNoRev371996(log);
     }
 
+    public void testCachedLogIsSameAsUncachedLog() throws IOException {
+        String uncached = executeTargetAndReadLogFully("start");
+        // fills the cache
+        String cold = executeTargetAndReadLogFully("cachedStart");
+        // uses the cache
+        String hit = executeTargetAndReadLogFully("cachedStart");
+        assertEquals(uncached, cold);
+        assertEquals(uncached, hit);
+    }
+
+    public void testParallelLogIsSameAsSerialLog() throws IOException {
+        String serial = executeTargetAndReadLogFully("start");
+        String parallel = executeTargetAndReadLogFully("parallelStart");
+        assertEquals(serial, parallel);
+    }
+
+    public void testConcurrentTasksWriteSameReports() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the file: URL of the local repository is built from its path
+            return;
+        }
+        executeTarget("stress");
+        File dir = getProject().resolveFile(getProject()
+                                            .getProperty("stressdir"));
+        String[] reports = {"log", "logxml", "diff", "tags"};
+        for (int i = 0; i < reports.length; i++) {
+            File serial = new File(dir, "serial-" + reports[i] + ".xml");
+            assertTrue(serial + " is empty", serial.length() > 200);
+            for (int j = 1; j <= 8; j++) {
+                File parallel = new File(dir, "p" + j + "-" + reports[i]
+                                         + ".xml");
+                assertTrue(parallel + " differs from " + serial,
+                           FileUtils.getFileUtils().contentEquals(serial,
+                                                                  parallel));
+            }
+        }
+        FileReader r = new FileReader(new File(dir, "serial-log.xml"));
+        try {
+            String log = FileUtils.readFully(r);
+            assertTrue(log.indexOf("<![CDATA[add & <a>]]>") > -1);
+            assertTrue(log.indexOf("<revision>5</revision>") > -1);
+        } finally {
+            r.close();
+        }
+    }
+
+    public void testChunkedLogIsSameAsUnchunkedLog() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the file: URL of the local repository is built from its path
+            return;
+        }
+        executeTarget("chunks");
+        // five files in three chunks
+        String unchunked = read("unchunked.xml");
+        assertEquals(unchunked, read("chunked.xml"));
+        for (int i = 2; i <= 9; i++) {
+            if (i != 4 && i != 6) {
+                assertTrue("revision " + i, unchunked.indexOf("<revision>"
+                                                              + i
+                                                              + "</revision>")
+                           > -1);
+            }
+        }
+    }
+
+    public void testCompactedLogIsSameAsFileLog() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the file: URL of the local repository is built from its path
+            return;
+        }
+        executeTarget("compaction");
+        String files = read("files.xml");
+        // logged for a.txt and src
+        assertEquals(files, read("compacted-dir.xml"));
+        // logged for the working copy root
+        assertEquals(files, read("compacted-root.xml"));
+        // only changes src/z.txt
+        assertTrue(files.indexOf("<revision>8</revision>") > -1);
+        assertEquals(-1, files.indexOf("<revision>9</revision>"));
+        // creates trunk
+        assertEquals(-1, files.indexOf("<revision>1</revision>"));
+    }
+
+    public void testCoveringPathsWithoutSelection() {
+        PathTrie t = new PathTrie();
+        t.add("a.txt", false);
+        t.add("d/x.txt", false);
+        assertCoveringPaths(new String[0], t, 0.01);
+        assertCoveringPaths(new String[0], t, 1);
+    }
+
+    public void testCoveringPathsAllSelected() {
+        PathTrie t = new PathTrie();
+        t.add("a.txt", true);
+        t.add("d/x.txt", true);
+        assertCoveringPaths(new String[] {"."}, t, 1);
+    }
+
+    public void testCoveringPathsThresholdOne() {
+        PathTrie t = new PathTrie();
+        t.add("d/x.txt", true);
+        t.add("d/y.txt", true);
+        t.add("e/x.txt", true);
+        t.add("e/y.txt", false);
+        assertCoveringPaths(new String[] {"d", "e/x.txt"}, t, 1);
+    }
+
+    public void testCoveringPathsAtThreshold() {
+        PathTrie t = new PathTrie();
+        t.add("d/x.txt", true);
+        t.add("d/y.txt", false);
+        t.add("f/1.txt", false);
+        t.add("f/2.txt", false);
+        // 1 of 2 files of d
+        assertCoveringPaths(new String[] {"d"}, t, 0.5);
+        assertCoveringPaths(new String[] {"d/x.txt"}, t, 0.51);
+        // 1 of 4 files of the root
+        assertCoveringPaths(new String[] {"."}, t, 0.25);
+    }
+
+    public void testCoveringPathsUseInnermostDirectories() {
+        PathTrie t = new PathTrie();
+        t.add("d/e/x.txt", true);
+        t.add("d/e/y.txt", true);
+        t.add("d/z.txt", false);
+        t.add("g/1.txt", false);
+        assertCoveringPaths(new String[] {"d/e"}, t, 1);
+        assertCoveringPaths(new String[] {"d"}, t, 0.6);
+    }
+
+    public void testSelectedPaths() {
+        PathTrie t = new PathTrie();
+        t.add("d/x.txt", true);
+        t.add("d" + File.separator + "y.txt", false);
+        assertTrue(t.isSelected("d/x.txt"));
+        assertTrue(t.isSelected("/d/x.txt"));
+        assertFalse(t.isSelected("d/y.txt"));
+        assertFalse(t.isSelected("d"));
+        assertFalse(t.isSelected("e"));
+        assertTrue(t.containsSelected("d"));
+        assertTrue(t.containsSelected(""));
+        assertFalse(t.containsSelected("d/y.txt"));
+    }
+
+    public void testRevisionIndexBoundaries() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // logsvn.sh stands in for svn
+            return;
+        }
+        SvnChangeLogTask task = new SvnChangeLogTask();
+        task.setProject(getProject());
+        task.setExecutable(getProject()
+                           .resolveFile("src/etc/testcases/logsvn.sh")
+                           .getAbsolutePath());
+        File dir = new File(getProject().getProperty("tmpdir"), "index");
+        long r1 = utc(2020, 1, 1, 10, 0);
+        long r2 = utc(2020, 1, 2, 10, 0);
+        long r3 = utc(2020, 1, 3, 11, 30);
+
+        SvnRevisionIndex index = new SvnRevisionIndex(dir, "uuid");
+        assertFalse(index.resolves(r2, 3));
+        assertTrue(index.update(task, "file:///repo", 2, 3));
+        // revision 1 is missing
+        assertFalse(index.resolves(r2 - 1, 3));
+        assertTrue(index.resolves(r2, 3));
+        assertEquals(2, index.getRevision(r2));
+        assertTrue(index.update(task, "file:///repo", 1, 3));
+        index.save();
+
+        index = new SvnRevisionIndex(dir, "uuid");
+        assertTrue(index.load());
+        // before the first revision
+        assertTrue(index.resolves(r1 - 1, 3));
+        assertEquals(0, index.getRevision(r1 - 1));
+        // exactly on commit times
+        assertEquals(1, index.getRevision(r1));
+        assertEquals(1, index.getRevision(r2 - 1));
+        assertEquals(2, index.getRevision(r2));
+        assertEquals(2, index.getRevision(r3 - 1));
+        assertEquals(3, index.getRevision(r3));
+        // after head
+        assertTrue(index.resolves(r3 + 1, 3));
+        assertEquals(3, index.getRevision(r3 + 1));
+        // unless revision 4 has been committed since
+        assertFalse(index.resolves(r3 + 1, 4));
+    }
+
+    public void testFilter() throws IOException {
+        String log = executeTargetAndReadLogFully("filter");
+        assertRev482074(log);
+        assertNoRev371996(log);
+    }
+
+    public void testRepositories() throws IOException {
+        String log = executeTargetAndReadLogFully("repositories");
+        assertTrue(log.indexOf("<revision>482074</revision>") > -1);
+        assertNoRev371996(log);
+        assertTrue(log.indexOf("<entry repository=\"site\">") > -1);
+    }
+
     public void testStartDate() throws IOException {
         String log = executeTargetAndReadLogFully("startDate");
         assertRev482074(log);
@@ -71,6 +334,35 @@ public class SvnChangeLogTaskTest extends BuildFileTest {
         assertRev371996(log);
     }
 
+    private static long utc(int year, int month, int day, int hour,
+                            int minute) {
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        c.clear();
+        c.set(year, month - 1, day, hour, minute);
+        return c.getTimeInMillis();
+    }
+
+    private static void assertCoveringPaths(String[] expected, PathTrie t,
+                                            double threshold) {
+        String[] actual = t.getCoveringPaths(threshold);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].replace('/', File.separatorChar),
+                         actual[i]);
+        }
+    }
+
+    private String read(String name) throws IOException {
+        String tmpDir = getProject().getProperty("tmpdir");
+        Reader r = new InputStreamReader(new FileInputStream(getProject()
+                                 .resolveFile(tmpDir + "/" + name)), "UTF-8");
+        try {
+            return FileUtils.readFully(r);
+        } finally {
+            r.close();
+        }
+    }
+
     private String executeTargetAndReadLogFully(String target) 
         throws IOException {
         executeTarget(target);
@@ -17,10 +17,13 @@
  */
 package org.apache.ant.svn;
 
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import org.apache.tools.ant.BuildFileTest;
+import org.apache.tools.ant.taskdefs.condition.Os;
 import org.apache.tools.ant.util.FileUtils;
 
 import junit.framework.Assert;
@@ -53,12 +56,89 @@ public class SvnRevisionDiffTest extends BuildFileTest {
         assertModified(log);
     }
 
+    public void testDiffFull() throws IOException {
+        String log = executeTargetAndReadLogFully("diff-full");
+        assertAttributesNoURL(log);
+        assertModified(log);
+    }
+
+    public void testDiffSummarizeText() throws IOException {
+        String log = executeTargetAndReadLogFully("diff-summarize-text");
+        assertAttributesWithURL(log);
+        assertModified(log);
+    }
+
+    public void testDefaultModeIsFull() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("diff-default-mode");
+        assertEquals("diff --revision 1:2 --no-diff-deleted"
+                     + " file:///repo/trunk\n", read("mode/calls.txt"));
+    }
+
+    public void testFormats() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("diff-formats");
+        String attrs = "2,1,file:///repo/trunk,";
+        assertEquals("end,start,svnurl,action,path\r\n"
+                     + attrs + "added,\"a,b.txt\"\r\n"
+                     + attrs + "modified,\"say \"\"hi\"\".txt\"\r\n"
+                     + attrs + "deleted,\"two\nlines.txt\"\r\n"
+                     + attrs + "modified,line\u2028separator.txt\r\n",
+                     read("diff.csv"));
+        attrs = "{\"end\":\"2\",\"start\":\"1\","
+            + "\"svnurl\":\"file:///repo/trunk\",";
+        assertEquals(attrs + "\"name\":\"a,b.txt\",\"action\":\"added\"}\n"
+                     + attrs + "\"name\":\"say \\\"hi\\\".txt\","
+                     + "\"action\":\"modified\"}\n"
+                     + attrs + "\"name\":\"two\\nlines.txt\","
+                     + "\"action\":\"deleted\"}\n"
+                     + attrs + "\"name\":\"line\\u2028separator.txt\","
+                     + "\"action\":\"modified\"}\n",
+                     read("diff.jsonl"));
+        String html = read("diff.html");
+        assertTrue(html.indexOf("<TITLE>a &amp; b</TITLE>") > -1);
+        assertTrue(html.indexOf("diff between 1 and 2") > -1);
+        assertHtmlPaths(html);
+    }
+
+    /**
+     * Asserts the links of an HTML report of the paths reportsvn.sh
+     * prints.
+     */
+    static void assertHtmlPaths(String html) {
+        String repo = "<a target=\"_new\" href=\"http://example.org/repo/";
+        assertTrue(html.indexOf(repo + "a,b.txt\">a,b.txt</a>") > -1);
+        assertTrue(html.indexOf(repo + "say %22hi%22.txt\">say \"hi\".txt</a>")
+                   > -1);
+        assertTrue(html.indexOf(repo + "two%0Alines.txt\">two\nlines.txt</a>")
+                   > -1);
+        assertTrue(html.indexOf(repo + "line%E2%80%A8separator.txt\">"
+                                + "line&#8232;separator.txt</a>") > -1);
+        int added = html.indexOf("New Files - 1 entries");
+        int modified = html.indexOf("Modified Files - 2 entries");
+        int deleted = html.indexOf("Removed Files - 1 entries");
+        assertTrue(added > -1);
+        assertTrue(modified > added);
+        assertTrue(deleted > modified);
+        assertTrue(html.indexOf("two%0Alines.txt") > deleted);
+    }
+
     private String executeTargetAndReadLogFully(String target) 
         throws IOException {
         executeTarget(target);
+        return read("diff.xml");
+    }
+
+    private String read(String name) throws IOException {
         String tmpDir = getProject().getProperty("tmpdir");
-        FileReader r = new FileReader(getProject()
-                                      .resolveFile(tmpDir + "/diff.xml"));
+        Reader r = new InputStreamReader(new FileInputStream(getProject()
+                                 .resolveFile(tmpDir + "/" + name)), "UTF-8");
         try {
             return FileUtils.readFully(r);
         } finally {
@@ -17,10 +17,13 @@
  */
 package org.apache.ant.svn;
 
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import org.apache.tools.ant.BuildFileTest;
+import org.apache.tools.ant.taskdefs.condition.Os;
 import org.apache.tools.ant.util.FileUtils;
 
 import junit.framework.Assert;
@@ -64,12 +67,45 @@ public class SvnTagDiffTest extends BuildFileTest {
         assertDeleted(log);
     }
 
+    public void testFormats() throws IOException {
+        if (!Os.isFamily("unix")) {
+            // the stand-in for svn is a shell script
+            return;
+        }
+        executeTarget("diff-formats");
+        String attrs = "1.0,file:///repo/,2.0,";
+        assertEquals("fromTag,svnurl,toTag,action,path\r\n"
+                     + attrs + "added,\"a,b.txt\"\r\n"
+                     + attrs + "modified,\"say \"\"hi\"\".txt\"\r\n"
+                     + attrs + "deleted,\"two\nlines.txt\"\r\n"
+                     + attrs + "modified,line\u2028separator.txt\r\n",
+                     read("diff.csv"));
+        attrs = "{\"fromTag\":\"1.0\",\"svnurl\":\"file:///repo/\","
+            + "\"toTag\":\"2.0\",";
+        assertEquals(attrs + "\"name\":\"a,b.txt\",\"action\":\"added\"}\n"
+                     + attrs + "\"name\":\"say \\\"hi\\\".txt\","
+                     + "\"action\":\"modified\"}\n"
+                     + attrs + "\"name\":\"two\\nlines.txt\","
+                     + "\"action\":\"deleted\"}\n"
+                     + attrs + "\"name\":\"line\\u2028separator.txt\","
+                     + "\"action\":\"modified\"}\n",
+                     read("diff.jsonl"));
+        String html = read("diff.html");
+        assertTrue(html.indexOf("<TITLE>a &amp; b</TITLE>") > -1);
+        assertTrue(html.indexOf("diff between 1.0 and 2.0") > -1);
+        SvnRevisionDiffTest.assertHtmlPaths(html);
+    }
+
     private String executeTargetAndReadLogFully(String target) 
         throws IOException {
         executeTarget(target);
+        return read("diff.xml");
+    }
+
+    private String read(String name) throws IOException {
         String tmpDir = getProject().getProperty("tmpdir");
-        FileReader r = new FileReader(getProject()
-                                      .resolveFile(tmpDir + "/diff.xml"));
+        Reader r = new InputStreamReader(new FileInputStream(getProject()
+                                 .resolveFile(tmpDir + "/" + name)), "UTF-8");
         try {
             return FileUtils.readFully(r);
         } finally {